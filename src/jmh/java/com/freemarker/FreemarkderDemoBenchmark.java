@@ -0,0 +1,186 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders test.ftlh exactly like {@link FreemarkderDemo#main(String[])} does: the Configuration comes from
+ * {@link FreemarkderDemo#createConfiguration()}, the root from {@link FreemarkderDemo#createDataModel()},
+ * and the output goes through {@link Template#process(Object, Writer)}.
+ *
+ * The sink parameter selects where the output goes:
+ * outputStreamWriter - a new OutputStreamWriter per render, like main does with System.out. The bytes are
+ *                      discarded instead of printed, otherwise we would measure the console and flood the JMH log.
+ * stringWriter       - one StringWriter per thread, reset before every render.
+ * nullWriter         - a Writer that drops everything, i.e. the cost of the template engine alone.
+ *
+ * Run it with the GC profiler to get the allocation per render (gc.alloc.rate.norm):
+ * java -jar target/benchmarks.jar FreemarkderDemoBenchmark -prof gc
+ *
+ * {@link RenderToChannelBenchmark} renders the same template into a channel instead of a Writer.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 10:05
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FreemarkderDemoBenchmark {
+
+    @Param({"outputStreamWriter", "stringWriter", "nullWriter"})
+    public String sink;
+
+    private Template template;
+
+    private Map<String, Object> root;
+
+    private StringWriter stringWriter;
+
+    @Setup
+    public void setUp() throws IOException {
+        Configuration cfg = FreemarkderDemo.createConfiguration();
+        template = cfg.getTemplate("test.ftlh");
+        root = FreemarkderDemo.createDataModel();
+        stringWriter = new StringWriter(512);
+    }
+
+    @Benchmark
+    public Writer render() throws IOException, TemplateException {
+        Writer out = newSink();
+        template.process(root, out);
+        return out;
+    }
+
+    /**
+     * The data model is built per render as well, this is what main (and every request in production) pays.
+     */
+    @Benchmark
+    public Writer renderWithNewDataModel() throws IOException, TemplateException {
+        Writer out = newSink();
+        template.process(FreemarkderDemo.createDataModel(), out);
+        return out;
+    }
+
+    /**
+     * Like {@link #renderWithNewDataModel()}, but with the lazy root of {@link FreemarkderDemo#createLazyDataModel}.
+     */
+    @Benchmark
+    public Writer renderWithLazyDataModel() throws IOException, TemplateException {
+        Writer out = newSink();
+        template.process(FreemarkderDemo.createLazyDataModel(template.getObjectWrapper()), out);
+        return out;
+    }
+
+    private Writer newSink() {
+        switch (sink) {
+            case "outputStreamWriter":
+                return new OutputStreamWriter(NullOutputStream.INSTANCE);
+            case "stringWriter":
+                stringWriter.getBuffer().setLength(0);
+                return stringWriter;
+            case "nullWriter":
+                return NullWriter.INSTANCE;
+            default:
+                throw new IllegalArgumentException("Unknown sink: " + sink);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(FreemarkderDemoBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+    static final class NullOutputStream extends OutputStream {
+
+        static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    static final class NullChannel implements WritableByteChannel {
+
+        static final NullChannel INSTANCE = new NullChannel();
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            ((Buffer) src).position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // Writer.nullWriter() only exists since Java 11, the pom targets 8.
+    static final class NullWriter extends Writer {
+
+        static final NullWriter INSTANCE = new NullWriter();
+
+        @Override
+        public void write(int c) {
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
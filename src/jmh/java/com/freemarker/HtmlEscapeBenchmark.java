@@ -0,0 +1,105 @@
+package com.freemarker;
+
+import freemarker.core.HTMLOutputFormat;
+import freemarker.template.TemplateModelException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stock HTMLOutputFormat escaper against {@link FastHtmlOutputFormat}.
+ *
+ * The text parameter selects what is escaped:
+ * plain - a sentence without anything to escape, like most text content;
+ * mixed - a sentence with a few quotes and an ampersand;
+ * heavy - markup-like text, where most of the chars are escaped.
+ *
+ * output* is what ${...} does in an .ftlh template (writes into the Writer, here a StringWriter reset before every
+ * call), escapePlainText* is what ?esc and markup values do. Run it with the GC profiler to see the allocations:
+ * java -jar target/benchmarks.jar HtmlEscapeBenchmark -prof gc
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 19:40
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlEscapeBenchmark {
+
+    @Param({"plain", "mixed", "heavy"})
+    public String text;
+
+    private String input;
+
+    private StringWriter out;
+
+    @Setup
+    public void setUp() {
+        switch (text) {
+            case "plain":
+                input = "Our latest product is the green mouse, available in all stores from next Monday on.";
+                break;
+            case "mixed":
+                input = "Tom's \"green mouse\" & the cat: available in all stores from next Monday on.";
+                break;
+            case "heavy":
+                input = "<a href=\"products/greenmouse.html\" title='green & mouse'><b>green mouse</b></a>";
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown text: " + text);
+        }
+        out = new StringWriter(input.length() * 6);
+    }
+
+    @Benchmark
+    public StringWriter outputStock() throws IOException, TemplateModelException {
+        out.getBuffer().setLength(0);
+        HTMLOutputFormat.INSTANCE.output(input, out);
+        return out;
+    }
+
+    @Benchmark
+    public StringWriter outputFast() throws IOException {
+        out.getBuffer().setLength(0);
+        FastHtmlOutputFormat.INSTANCE.output(input, out);
+        return out;
+    }
+
+    @Benchmark
+    public String escapePlainTextStock() {
+        return HTMLOutputFormat.INSTANCE.escapePlainText(input);
+    }
+
+    @Benchmark
+    public String escapePlainTextFast() {
+        return FastHtmlOutputFormat.INSTANCE.escapePlainText(input);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(HtmlEscapeBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
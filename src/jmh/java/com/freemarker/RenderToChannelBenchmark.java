@@ -0,0 +1,65 @@
+package com.freemarker;
+
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders test.ftlh with {@link FreemarkderDemo#renderTo} into a channel that drops everything. Compare it with
+ * FreemarkderDemoBenchmark.render with the outputStreamWriter sink, the same render through an OutputStreamWriter.
+ *
+ * It has no sink parameter, the output always goes to the channel:
+ * java -jar target/benchmarks.jar RenderToChannelBenchmark -prof gc
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderToChannelBenchmark {
+
+    private Template template;
+
+    private Map<String, Object> root;
+
+    @Setup
+    public void setUp() throws IOException {
+        template = FreemarkderDemo.createConfiguration().getTemplate("test.ftlh");
+        root = FreemarkderDemo.createDataModel();
+    }
+
+    @Benchmark
+    public void renderToChannel() throws IOException, TemplateException {
+        FreemarkderDemo.renderTo(template, root, FreemarkderDemoBenchmark.NullChannel.INSTANCE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RenderToChannelBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,68 @@
+package com.freemarker;
+
+import freemarker.core.HTMLOutputFormat;
+import freemarker.core.TemplateHTMLOutputModel;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.Version;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A DefaultObjectWrapper that wraps {@link TemplateBean} annotated beans into their generated adapters.
+ * Everything else (Strings, Numbers, Maps, not annotated beans, etc.) is wrapped like DefaultObjectWrapper does,
+ * but the HTML markup created with the stock HTMLOutputFormat, which is converted to {@link FastHtmlOutputFormat}
+ * markup so the HTML templates can print it.
+ *
+ * The adapters are matched by the exact class of the object; a subclass of an annotated bean may have more
+ * properties, so it goes through the usual reflection based wrapping.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 12:20
+ */
+public class AdapterObjectWrapper extends DefaultObjectWrapper {
+
+    private final Map<Class<?>, BeanAdapterFactory<?>> factories = new HashMap<>();
+
+    public AdapterObjectWrapper(Version incompatibleImprovements) {
+        super(incompatibleImprovements);
+        for (BeanAdapterFactory<?> factory : ServiceLoader.load(BeanAdapterFactory.class, AdapterObjectWrapper.class.getClassLoader())) {
+            factories.put(factory.getBeanClass(), factory);
+        }
+    }
+
+    /**
+     * The {@link TemplateBean} classes that have an adapter, sorted by name.
+     */
+    public Set<Class<?>> getAdaptedClasses() {
+        Set<Class<?>> classes = new TreeSet<>(Comparator.comparing(Class::getName));
+        classes.addAll(factories.keySet());
+        return classes;
+    }
+
+    @Override
+    public TemplateModel wrap(Object obj) throws TemplateModelException {
+        if (obj instanceof TemplateHTMLOutputModel
+                && ((TemplateHTMLOutputModel) obj).getOutputFormat() == HTMLOutputFormat.INSTANCE) {
+            return FastHtmlOutputFormat.INSTANCE.fromMarkup(
+                    HTMLOutputFormat.INSTANCE.getMarkupString((TemplateHTMLOutputModel) obj));
+        }
+        return super.wrap(obj);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected TemplateModel handleUnknownType(Object obj) throws TemplateModelException {
+        BeanAdapterFactory<Object> factory = (BeanAdapterFactory<Object>) factories.get(obj.getClass());
+        if (factory != null) {
+            return factory.adapt(obj, this);
+        }
+        return super.handleUnknownType(obj);
+    }
+}
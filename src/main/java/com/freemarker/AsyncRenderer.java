@@ -0,0 +1,115 @@
+package com.freemarker;
+
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Renders without blocking the calling thread, for callers like a Netty event loop.
+ *
+ * The top-level values of the data-model may be CompletionStage-s (a CompletableFuture of a remote call, say):
+ * the render waits for all of them without holding a thread, then runs on the executor with each stage replaced by
+ * its result. So the slow sources are fetched concurrently, and a render only takes a thread for the time it takes
+ * to merge the template. If one of them fails, the template is not rendered, and the returned stage fails with
+ * the same exception.
+ *
+ * Only the top-level values are looked at; a CompletionStage nested deeper would be wrapped as an ordinary bean.
+ * IOException-s and TemplateException-s of the render complete the returned stage exceptionally, wrapped into a
+ * CompletionException like CompletableFuture does.
+ *
+ * Rendering itself is blocking, it writes into the Writer or channel on the executor thread, so give it one that
+ * can block (the virtual thread executor of {@link RenderExecutors}, or a pool), or render to a String.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 17:10
+ */
+public class AsyncRenderer {
+
+    private final Executor executor;
+
+    /**
+     * @param executor the renders run on it; it's not shut down by this class
+     */
+    public AsyncRenderer(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Like {@link FreemarkderDemo#renderTo}, once the CompletionStage values of dataModel are completed.
+     */
+    public CompletionStage<Void> renderTo(Template template, Map<String, ?> dataModel, WritableByteChannel channel) {
+        return whenResolved(dataModel).thenAcceptAsync(resolved -> {
+            try {
+                FreemarkderDemo.renderTo(template, resolved, channel);
+            } catch (IOException | TemplateException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Like Template.process, once the CompletionStage values of dataModel are completed.
+     */
+    public CompletionStage<Void> process(Template template, Map<String, ?> dataModel, Writer out) {
+        return whenResolved(dataModel).thenAcceptAsync(resolved -> {
+            try {
+                template.process(resolved, out);
+            } catch (IOException | TemplateException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    public CompletionStage<String> renderToString(Template template, Map<String, ?> dataModel) {
+        return whenResolved(dataModel).thenApplyAsync(resolved -> {
+            StringWriter out = new StringWriter();
+            try {
+                template.process(resolved, out);
+            } catch (IOException | TemplateException e) {
+                throw new CompletionException(e);
+            }
+            return out.toString();
+        }, executor);
+    }
+
+    /**
+     * Completes with a copy of dataModel where the CompletionStage values are replaced by their results,
+     * when all of them are completed.
+     */
+    static CompletableFuture<Map<String, Object>> whenResolved(Map<String, ?> dataModel) {
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (Object value : dataModel.values()) {
+            if (value instanceof CompletionStage) {
+                pending.add(((CompletionStage<?>) value).toCompletableFuture());
+            }
+        }
+        CompletableFuture<Void> all = pending.isEmpty()
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]));
+        return all.thenApply(ignored -> {
+            // LinkedHashMap, so ?keys lists them in the same order as the original
+            Map<String, Object> resolved = new LinkedHashMap<>(dataModel.size() * 4 / 3 + 1);
+            for (Map.Entry<String, ?> entry : dataModel.entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof CompletionStage) {
+                    // Already completed, so it doesn't block
+                    value = ((CompletionStage<?>) value).toCompletableFuture().join();
+                }
+                resolved.put(entry.getKey(), value);
+            }
+            return resolved;
+        });
+    }
+}
@@ -0,0 +1,193 @@
+package com.freemarker;
+
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Renders one template with many data-models, in parallel on the given ExecutorService
+ * (a ForkJoinPool, or the virtual thread executor of {@link RenderExecutors}).
+ *
+ * Template instances are thread-safe, so all the renders share the same Template. The data-models are pulled
+ * from the Iterator (or Stream) only when there is room for them: at most maxInFlight documents are being
+ * rendered or waiting to be consumed at any time, so the batch is never buffered as a whole, however large it is.
+ *
+ * The rendered documents are handed to the {@link DocumentSink} on the thread that called render,
+ * one at a time, either in the order of the data-models ({@link Order#ORDERED}) or as soon as they
+ * are ready ({@link Order#UNORDERED}). So the sink doesn't have to be thread-safe.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 13:05
+ */
+public class BatchRenderer {
+
+    public enum Order {
+        /**
+         * Documents are consumed in the order of their data-models. One slow document holds back the ones after it
+         * (but not the rendering of them, as long as the window isn't full).
+         */
+        ORDERED,
+        /**
+         * Documents are consumed in the order they are finished.
+         */
+        UNORDERED
+    }
+
+    /**
+     * Receives the rendered documents.
+     */
+    @FunctionalInterface
+    public interface DocumentSink<T> {
+        void accept(T dataModel, String document) throws IOException;
+    }
+
+    private final ExecutorService executor;
+
+    private final int maxInFlight;
+
+    /**
+     * @param executor    the renders run on it; it's not shut down by this class
+     * @param maxInFlight how many documents can be rendered or wait for the sink at the same time
+     */
+    public BatchRenderer(ExecutorService executor, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1, but was " + maxInFlight);
+        }
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public <T> long render(Template template, Stream<T> dataModels, Order order, DocumentSink<? super T> sink)
+            throws IOException, TemplateException, InterruptedException {
+        return render(template, dataModels.iterator(), order, sink);
+    }
+
+    /**
+     * Renders every data-model, and waits until all the documents were given to the sink.
+     * If a render or the sink fails, the renders still running are cancelled and the exception is rethrown.
+     *
+     * @return the number of documents rendered
+     */
+    public <T> long render(Template template, Iterator<T> dataModels, Order order, DocumentSink<? super T> sink)
+            throws IOException, TemplateException, InterruptedException {
+        return order == Order.ORDERED
+                ? renderOrdered(template, dataModels, sink)
+                : renderUnordered(template, dataModels, sink);
+    }
+
+    private <T> long renderOrdered(Template template, Iterator<T> dataModels, DocumentSink<? super T> sink)
+            throws IOException, TemplateException, InterruptedException {
+        ArrayDeque<Future<Document<T>>> window = new ArrayDeque<>(maxInFlight);
+        long count = 0;
+        try {
+            while (dataModels.hasNext() || !window.isEmpty()) {
+                while (window.size() < maxInFlight && dataModels.hasNext()) {
+                    window.add(executor.submit(new RenderTask<>(template, dataModels.next())));
+                }
+                Document<T> document = await(window.poll());
+                sink.accept(document.dataModel, document.output);
+                count++;
+            }
+            return count;
+        } finally {
+            for (Future<Document<T>> future : window) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private <T> long renderUnordered(Template template, Iterator<T> dataModels, DocumentSink<? super T> sink)
+            throws IOException, TemplateException, InterruptedException {
+        CompletionService<Document<T>> completionService = new ExecutorCompletionService<>(executor);
+        ArrayDeque<Future<Document<T>>> submitted = new ArrayDeque<>(maxInFlight);
+        int inFlight = 0;
+        long count = 0;
+        try {
+            while (dataModels.hasNext() || inFlight > 0) {
+                while (inFlight < maxInFlight && dataModels.hasNext()) {
+                    submitted.add(completionService.submit(new RenderTask<>(template, dataModels.next())));
+                    inFlight++;
+                }
+                Future<Document<T>> done = completionService.take();
+                inFlight--;
+                submitted.remove(done);
+                Document<T> document = await(done);
+                sink.accept(document.dataModel, document.output);
+                count++;
+            }
+            return count;
+        } finally {
+            for (Future<Document<T>> future : submitted) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static <T> Document<T> await(Future<Document<T>> future)
+            throws IOException, TemplateException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // ForkJoinPool wraps checked exceptions into plain RuntimeException-s
+            while (cause.getClass() == RuntimeException.class && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof TemplateException) {
+                throw (TemplateException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static final class RenderTask<T> implements Callable<Document<T>> {
+
+        private final Template template;
+
+        private final T dataModel;
+
+        RenderTask(Template template, T dataModel) {
+            this.template = template;
+            this.dataModel = dataModel;
+        }
+
+        @Override
+        public Document<T> call() throws IOException, TemplateException {
+            StringWriter out = new StringWriter();
+            template.process(dataModel, out);
+            return new Document<>(dataModel, out.toString());
+        }
+    }
+
+    private static final class Document<T> {
+
+        final T dataModel;
+
+        final String output;
+
+        Document(T dataModel, String output) {
+            this.dataModel = dataModel;
+            this.output = output;
+        }
+    }
+}
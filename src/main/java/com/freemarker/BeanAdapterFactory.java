@@ -0,0 +1,19 @@
+package com.freemarker;
+
+import freemarker.template.ObjectWrapper;
+import freemarker.template.TemplateModel;
+
+/**
+ * Creates the generated TemplateModel adapter of a {@link TemplateBean}. The implementations are generated by
+ * {@link com.freemarker.processor.TemplateBeanProcessor}, and listed in META-INF/services, so that
+ * {@link AdapterObjectWrapper} can find them with the ServiceLoader.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 12:20
+ */
+public interface BeanAdapterFactory<T> {
+
+    Class<T> getBeanClass();
+
+    TemplateModel adapt(T bean, ObjectWrapper objectWrapper);
+}
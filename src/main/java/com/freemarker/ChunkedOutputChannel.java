@@ -0,0 +1,191 @@
+package com.freemarker;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A channel that streams the rendered bytes to an HTTP response body (a ServletOutputStream, or the OutputStream of
+ * a socket) in chunks of a fixed size, and flushes the response according to a {@link FlushPolicy}. Render into it
+ * with {@link FreemarkderDemo#renderTo}, then close it to end the body.
+ *
+ * Flushing pushes the bytes to the browser, so it can start on the &lt;head&gt; (fetch the CSS and scripts) while the
+ * body is still being rendered; but every flush is a packet (and a syscall), so flushing on every small write is bad
+ * too. The policies:
+ * - {@link FlushPolicy#AFTER_BYTES}: the response is flushed whenever flushAfterBytes bytes were written since the
+ *   last flush; explicit flushes are ignored;
+ * - {@link FlushPolicy#ON_FLUSH}: the response is flushed when the Writer is flushed, that is at the &lt;#flush&gt;
+ *   directives of the template (put one after the &lt;head&gt;), and when Template.process ends;
+ * - {@link FlushPolicy#END_ONLY}: the response is only flushed by close(); full chunks are still written as they
+ *   fill up, the sink may send them on its own.
+ *
+ * With httpChunkedEncoding, every chunk is framed as in HTTP/1.1 chunked transfer encoding (hex size, CRLF, data,
+ * CRLF), and close() writes the last, empty chunk; use it when writing to a raw connection. Servlet containers do
+ * the framing themselves, so don't use it with a ServletOutputStream.
+ *
+ * close() doesn't close the sink. Not thread-safe, like the render writing into it.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 18:10
+ */
+public class ChunkedOutputChannel implements WritableByteChannel, Flushable {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    public enum FlushPolicy {
+        AFTER_BYTES,
+        ON_FLUSH,
+        END_ONLY
+    }
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+    private static final byte[] HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    private final OutputStream sink;
+    private final FlushPolicy flushPolicy;
+    private final long flushAfterBytes;
+    private final boolean httpChunkedEncoding;
+
+    private final byte[] chunk;
+    private int count;
+    // The chunk size line: at most 8 hex digits and CRLF
+    private final byte[] sizeLine = new byte[10];
+
+    private long unflushedBytes;
+    private long bytesWritten;
+    private int flushCount;
+    private boolean open = true;
+
+    /**
+     * Flushes by {@link FlushPolicy#ON_FLUSH}, with chunks of {@link #DEFAULT_CHUNK_SIZE}, without HTTP chunk framing.
+     */
+    public ChunkedOutputChannel(OutputStream sink) {
+        this(sink, DEFAULT_CHUNK_SIZE, FlushPolicy.ON_FLUSH, 0, false);
+    }
+
+    /**
+     * @param flushAfterBytes only used with {@link FlushPolicy#AFTER_BYTES}
+     */
+    public ChunkedOutputChannel(OutputStream sink, int chunkSize, FlushPolicy flushPolicy, long flushAfterBytes,
+                                boolean httpChunkedEncoding) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1, but was " + chunkSize);
+        }
+        if (flushPolicy == FlushPolicy.AFTER_BYTES && flushAfterBytes < 1) {
+            throw new IllegalArgumentException("flushAfterBytes must be at least 1, but was " + flushAfterBytes);
+        }
+        this.sink = sink;
+        this.chunk = new byte[chunkSize];
+        this.flushPolicy = flushPolicy;
+        this.flushAfterBytes = flushAfterBytes;
+        this.httpChunkedEncoding = httpChunkedEncoding;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        int written = src.remaining();
+        while (src.hasRemaining()) {
+            int n = Math.min(src.remaining(), chunk.length - count);
+            if (flushPolicy == FlushPolicy.AFTER_BYTES) {
+                n = (int) Math.min(n, flushAfterBytes - unflushedBytes - count);
+            }
+            src.get(chunk, count, n);
+            count += n;
+            if (flushPolicy == FlushPolicy.AFTER_BYTES && unflushedBytes + count >= flushAfterBytes) {
+                writeChunk();
+                flushSink();
+            } else if (count == chunk.length) {
+                writeChunk();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Sends the buffered bytes and flushes the sink with {@link FlushPolicy#ON_FLUSH}, does nothing with the others.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        if (flushPolicy == FlushPolicy.ON_FLUSH) {
+            writeChunk();
+            flushSink();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Sends the buffered bytes, ends the chunked body if httpChunkedEncoding, and flushes the sink.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        writeChunk();
+        if (httpChunkedEncoding) {
+            sink.write(LAST_CHUNK);
+            flushSink();
+        } else if (unflushedBytes > 0) {
+            flushSink();
+        }
+    }
+
+    /**
+     * @return the number of body bytes written to the sink so far, without the chunk framing
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public int getFlushCount() {
+        return flushCount;
+    }
+
+    private void writeChunk() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (httpChunkedEncoding) {
+            int digits = 0;
+            for (int size = count; size != 0; size >>>= 4) {
+                digits++;
+            }
+            for (int i = digits - 1, size = count; i >= 0; i--, size >>>= 4) {
+                sizeLine[i] = HEX_DIGITS[size & 0xF];
+            }
+            sizeLine[digits] = '\r';
+            sizeLine[digits + 1] = '\n';
+            sink.write(sizeLine, 0, digits + 2);
+            sink.write(chunk, 0, count);
+            sink.write(CRLF);
+        } else {
+            sink.write(chunk, 0, count);
+        }
+        unflushedBytes += count;
+        bytesWritten += count;
+        count = 0;
+    }
+
+    private void flushSink() throws IOException {
+        sink.flush();
+        unflushedBytes = 0;
+        flushCount++;
+    }
+}
@@ -0,0 +1,587 @@
+package com.freemarker;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compact binary format for data-models like the one of {@link FreemarkderDemo#createDataModel()}, so the data-models
+ * of production renders can be captured, and replayed later by {@link RenderReplay} without the services that built them.
+ *
+ * Supported values: null, String (and Character), Boolean, the Number types of java.lang and java.math, java.util.Date
+ * and its java.sql subclasses (FreeMarker treats them differently, so the type is kept), Map (with String keys),
+ * Collection and arrays (read back as List), enums, and JavaBeans like {@link Product}. A bean is written as its class
+ * name and its readable properties. When read, it's created with its no-arg constructor and its setters only if its
+ * class is one of the bean classes allowed by the reader ({@link #templateBeanClasses()} by default); any other bean,
+ * or one that can't be restored, becomes a Map of its properties. The templates see the same either way. The class
+ * names come from the input, so they are never loaded: a crafted file could otherwise create any class with a no-arg
+ * constructor and call its setters (a JNDI lookup, say). TemplateModel-s (like {@link LazyDataModel}) can't be
+ * written, capture the plain objects behind them.
+ *
+ * Every value is a tag byte followed by its content; lengths and ints are varints, and repeated strings (map keys,
+ * property names) are written once per value and then referred to by index. The reader rejects lengths over
+ * {@link #MAX_LENGTH} with an IOException, like any other corrupt input.
+ *
+ * Captures (a template name and its data-model) are written by a {@link CaptureWriter} into a file that starts with
+ * {@link #MAGIC} and {@link #VERSION}; each capture can be decoded on its own.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 18:40
+ */
+public final class DataModelCodec {
+
+    static final int MAGIC = 0x4654444D;
+
+    static final int VERSION = 1;
+
+    // Beans nested deeper than this are most likely a cycle
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * The longest string, and the most entries of a map or a list, that the reader accepts.
+     */
+    public static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte STRING_REF = 2;
+    private static final byte TRUE = 3;
+    private static final byte FALSE = 4;
+    private static final byte INT = 5;
+    private static final byte LONG = 6;
+    private static final byte SHORT = 7;
+    private static final byte BYTE = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte FLOAT = 10;
+    private static final byte BIG_INTEGER = 11;
+    private static final byte BIG_DECIMAL = 12;
+    private static final byte DATE = 13;
+    private static final byte SQL_DATE = 14;
+    private static final byte SQL_TIME = 15;
+    private static final byte SQL_TIMESTAMP = 16;
+    private static final byte MAP = 17;
+    private static final byte LIST = 18;
+    private static final byte ENUM = 19;
+    private static final byte BEAN = 20;
+
+    private static final Map<Class<?>, PropertyDescriptor[]> BEAN_PROPERTIES = new ConcurrentHashMap<>();
+
+    private DataModelCodec() {
+    }
+
+    /**
+     * A capture read back: the name of the rendered template and its data-model.
+     */
+    public static final class Capture {
+
+        private final String templateName;
+        private final Object dataModel;
+
+        public Capture(String templateName, Object dataModel) {
+            this.templateName = templateName;
+            this.dataModel = dataModel;
+        }
+
+        public String getTemplateName() {
+            return templateName;
+        }
+
+        public Object getDataModel() {
+            return dataModel;
+        }
+    }
+
+    /**
+     * Appends captures to a stream; thread-safe, so the renders of all threads can record into the same file.
+     */
+    public static final class CaptureWriter implements Closeable {
+
+        private final DataOutputStream out;
+
+        public CaptureWriter(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(out);
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+        }
+
+        /**
+         * Writes the data-model right away, so it doesn't matter if it changes after the render.
+         */
+        public synchronized void capture(String templateName, Object dataModel) throws IOException {
+            Encoder encoder = new Encoder(out);
+            encoder.writeString(templateName);
+            encoder.writeValue(dataModel, 0);
+            out.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * The {@link TemplateBean} classes that have a generated adapter, the bean classes restored by default.
+     */
+    public static Set<Class<?>> templateBeanClasses() {
+        return TemplateBeanClasses.CLASSES;
+    }
+
+    /**
+     * Reads all the captures of a stream written by a {@link CaptureWriter}, restoring the {@link #templateBeanClasses()}.
+     */
+    public static List<Capture> readCaptures(InputStream in) throws IOException {
+        return readCaptures(in, templateBeanClasses());
+    }
+
+    /**
+     * Reads all the captures of a stream written by a {@link CaptureWriter}.
+     *
+     * @param beanClasses the bean classes to restore; the other beans are read as Maps
+     */
+    public static List<Capture> readCaptures(InputStream in, Set<Class<?>> beanClasses) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a data-model capture file");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported data-model capture version: " + version);
+        }
+        List<Capture> captures = new ArrayList<>();
+        while (true) {
+            Decoder decoder = new Decoder(data, beanClasses);
+            int tag = data.read();
+            if (tag == -1) {
+                return captures;
+            }
+            Object templateName = decoder.readValue((byte) tag, 0);
+            if (!(templateName instanceof String)) {
+                throw new IOException("Corrupt data-model capture, a template name was expected");
+            }
+            captures.add(new Capture((String) templateName, decoder.readValue(0)));
+        }
+    }
+
+    public static void write(Object dataModel, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        new Encoder(data).writeValue(dataModel, 0);
+        data.flush();
+    }
+
+    /**
+     * Reads a value written by {@link #write}, restoring the {@link #templateBeanClasses()}.
+     */
+    public static Object read(InputStream in) throws IOException {
+        return read(in, templateBeanClasses());
+    }
+
+    /**
+     * Reads a value written by {@link #write}.
+     *
+     * @param beanClasses the bean classes to restore; the other beans are read as Maps
+     */
+    public static Object read(InputStream in, Set<Class<?>> beanClasses) throws IOException {
+        return new Decoder(new DataInputStream(in), beanClasses).readValue(0);
+    }
+
+    private static final class Encoder {
+
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        Encoder(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeValue(Object value, int depth) throws IOException {
+            if (depth > MAX_DEPTH) {
+                throw new IOException("The data-model is nested deeper than " + MAX_DEPTH + " levels, is there a cycle?");
+            }
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof String || value instanceof Character) {
+                writeString(value.toString());
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Number) {
+                writeNumber((Number) value);
+            } else if (value instanceof Date) {
+                writeDate((Date) value);
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(MAP);
+                writeVarInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeString(String.valueOf(entry.getKey()));
+                    writeValue(entry.getValue(), depth + 1);
+                }
+            } else if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                out.writeByte(LIST);
+                writeVarInt(collection.size());
+                for (Object item : collection) {
+                    writeValue(item, depth + 1);
+                }
+            } else if (value.getClass().isArray()) {
+                int length = Array.getLength(value);
+                out.writeByte(LIST);
+                writeVarInt(length);
+                for (int i = 0; i < length; i++) {
+                    writeValue(Array.get(value, i), depth + 1);
+                }
+            } else if (value instanceof Enum) {
+                out.writeByte(ENUM);
+                writeString(((Enum<?>) value).getDeclaringClass().getName());
+                writeString(((Enum<?>) value).name());
+            } else if (value instanceof freemarker.template.TemplateModel) {
+                throw new IOException("TemplateModel-s can't be captured: " + value.getClass().getName());
+            } else {
+                writeBean(value, depth);
+            }
+        }
+
+        void writeString(String s) throws IOException {
+            Integer index = strings.get(s);
+            if (index != null) {
+                out.writeByte(STRING_REF);
+                writeVarInt(index);
+                return;
+            }
+            strings.put(s, strings.size());
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(STRING);
+            writeVarInt(utf8.length);
+            out.write(utf8);
+        }
+
+        private void writeNumber(Number n) throws IOException {
+            if (n instanceof Integer) {
+                out.writeByte(INT);
+                writeVarInt(zigZag(n.intValue()));
+            } else if (n instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong(n.longValue());
+            } else if (n instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble(n.doubleValue());
+            } else if (n instanceof Short) {
+                out.writeByte(SHORT);
+                out.writeShort(n.shortValue());
+            } else if (n instanceof Byte) {
+                out.writeByte(BYTE);
+                out.writeByte(n.byteValue());
+            } else if (n instanceof Float) {
+                out.writeByte(FLOAT);
+                out.writeFloat(n.floatValue());
+            } else if (n instanceof BigInteger) {
+                out.writeByte(BIG_INTEGER);
+                writeBytes(((BigInteger) n).toByteArray());
+            } else if (n instanceof BigDecimal) {
+                BigDecimal d = (BigDecimal) n;
+                out.writeByte(BIG_DECIMAL);
+                writeVarInt(zigZag(d.scale()));
+                writeBytes(d.unscaledValue().toByteArray());
+            } else {
+                // AtomicLong, LongAdder and the like; the exact value is kept, the type isn't
+                writeNumber(new BigDecimal(n.toString()));
+            }
+        }
+
+        private void writeDate(Date date) throws IOException {
+            if (date instanceof java.sql.Timestamp) {
+                out.writeByte(SQL_TIMESTAMP);
+                out.writeLong(date.getTime());
+                writeVarInt(((java.sql.Timestamp) date).getNanos());
+            } else {
+                out.writeByte(date instanceof java.sql.Date ? SQL_DATE : date instanceof java.sql.Time ? SQL_TIME : DATE);
+                out.writeLong(date.getTime());
+            }
+        }
+
+        private void writeBean(Object bean, int depth) throws IOException {
+            PropertyDescriptor[] properties = beanProperties(bean.getClass());
+            out.writeByte(BEAN);
+            writeString(bean.getClass().getName());
+            writeVarInt(properties.length);
+            for (PropertyDescriptor property : properties) {
+                Object value;
+                try {
+                    value = property.getReadMethod().invoke(bean);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new IOException("Can't read " + bean.getClass().getName() + "." + property.getName(), e);
+                }
+                writeString(property.getName());
+                writeValue(value, depth + 1);
+            }
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        private static int zigZag(int value) {
+            return (value << 1) ^ (value >> 31);
+        }
+    }
+
+    private static final class Decoder {
+
+        private final DataInputStream in;
+        private final Map<String, Class<?>> beanClasses = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        Decoder(DataInputStream in, Set<Class<?>> beanClasses) {
+            this.in = in;
+            for (Class<?> beanClass : beanClasses) {
+                this.beanClasses.put(beanClass.getName(), beanClass);
+            }
+        }
+
+        Object readValue(int depth) throws IOException {
+            return readValue(in.readByte(), depth);
+        }
+
+        Object readValue(byte tag, int depth) throws IOException {
+            if (depth > MAX_DEPTH) {
+                throw new IOException("Corrupt data-model, nested deeper than " + MAX_DEPTH + " levels");
+            }
+            switch (tag) {
+                case NULL:
+                    return null;
+                case STRING:
+                    String s = new String(readBytes(), StandardCharsets.UTF_8);
+                    strings.add(s);
+                    return s;
+                case STRING_REF:
+                    int index = readVarInt();
+                    if (index < 0 || index >= strings.size()) {
+                        throw new IOException("Corrupt data-model, string reference " + index + " is out of range");
+                    }
+                    return strings.get(index);
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case INT:
+                    int zigZag = readVarInt();
+                    return (zigZag >>> 1) ^ -(zigZag & 1);
+                case LONG:
+                    return in.readLong();
+                case SHORT:
+                    return in.readShort();
+                case BYTE:
+                    return in.readByte();
+                case DOUBLE:
+                    return in.readDouble();
+                case FLOAT:
+                    return in.readFloat();
+                case BIG_INTEGER:
+                    return new BigInteger(readBytes());
+                case BIG_DECIMAL:
+                    int scaleZigZag = readVarInt();
+                    int scale = (scaleZigZag >>> 1) ^ -(scaleZigZag & 1);
+                    return new BigDecimal(new BigInteger(readBytes()), scale);
+                case DATE:
+                    return new Date(in.readLong());
+                case SQL_DATE:
+                    return new java.sql.Date(in.readLong());
+                case SQL_TIME:
+                    return new java.sql.Time(in.readLong());
+                case SQL_TIMESTAMP:
+                    java.sql.Timestamp timestamp = new java.sql.Timestamp(in.readLong());
+                    int nanos = readVarInt();
+                    if (nanos < 0 || nanos > 999_999_999) {
+                        throw new IOException("Corrupt data-model, " + nanos + " nanoseconds is out of range");
+                    }
+                    timestamp.setNanos(nanos);
+                    return timestamp;
+                case MAP:
+                    return readMap(readLength(), depth);
+                case LIST:
+                    int size = readLength();
+                    List<Object> list = new ArrayList<>(Math.min(size, 1024));
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue(depth + 1));
+                    }
+                    return list;
+                case ENUM:
+                    return readEnum(readString(), readString());
+                case BEAN:
+                    return readBean(readString(), depth);
+                default:
+                    throw new IOException("Corrupt data-model, unknown tag " + tag);
+            }
+        }
+
+        private Map<String, Object> readMap(int size, int depth) throws IOException {
+            // LinkedHashMap, so ?keys lists them in the same order as the original
+            Map<String, Object> map = new LinkedHashMap<>(Math.min(size, 1024) * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                map.put(key, readValue(depth + 1));
+            }
+            return map;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object readEnum(String className, String name) {
+            try {
+                Class<?> enumClass = Class.forName(className, false, DataModelCodec.class.getClassLoader());
+                // Not initialized (valueOf would do that) unless it's an enum
+                if (!enumClass.isEnum()) {
+                    return name;
+                }
+                return Enum.valueOf((Class) enumClass, name);
+            } catch (ClassNotFoundException | LinkageError | IllegalArgumentException | ClassCastException e) {
+                // The templates see an enum as its name anyway
+                return name;
+            }
+        }
+
+        private Object readBean(String className, int depth) throws IOException {
+            Map<String, Object> properties = readMap(readLength(), depth);
+            Class<?> beanClass = beanClasses.get(className);
+            Object bean = beanClass != null ? newBean(beanClass) : null;
+            if (bean == null) {
+                return properties;
+            }
+            Map<String, PropertyDescriptor> byName = new HashMap<>();
+            for (PropertyDescriptor property : beanProperties(bean.getClass())) {
+                byName.put(property.getName(), property);
+            }
+            for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                PropertyDescriptor property = byName.get(entry.getKey());
+                Method setter = property != null ? property.getWriteMethod() : null;
+                if (setter == null) {
+                    // Read-only property, the bean can't be restored
+                    return properties;
+                }
+                try {
+                    setter.invoke(bean, entry.getValue());
+                } catch (IllegalAccessException | InvocationTargetException | IllegalArgumentException e) {
+                    return properties;
+                }
+            }
+            return bean;
+        }
+
+        private String readString() throws IOException {
+            Object s = readValue(0);
+            if (!(s instanceof String)) {
+                throw new IOException("Corrupt data-model, a string was expected");
+            }
+            return (String) s;
+        }
+
+        private byte[] readBytes() throws IOException {
+            byte[] bytes = new byte[readLength()];
+            in.readFully(bytes);
+            return bytes;
+        }
+
+        private int readLength() throws IOException {
+            int length = readVarInt();
+            if (length < 0 || length > MAX_LENGTH) {
+                throw new IOException("Corrupt data-model, length " + (length & 0xFFFFFFFFL) + " is out of range");
+            }
+            return length;
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.read();
+                if (b == -1) {
+                    throw new EOFException();
+                }
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt data-model, varint is too long");
+        }
+    }
+
+    private static Object newBean(Class<?> beanClass) {
+        try {
+            Constructor<?> constructor = beanClass.getConstructor();
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    // Loaded on first use, not by the writers
+    private static final class TemplateBeanClasses {
+
+        static final Set<Class<?>> CLASSES;
+
+        static {
+            Set<Class<?>> classes = new HashSet<>();
+            for (BeanAdapterFactory<?> factory : ServiceLoader.load(BeanAdapterFactory.class,
+                    DataModelCodec.class.getClassLoader())) {
+                classes.add(factory.getBeanClass());
+            }
+            CLASSES = Collections.unmodifiableSet(classes);
+        }
+    }
+
+    private static PropertyDescriptor[] beanProperties(Class<?> beanClass) throws IOException {
+        PropertyDescriptor[] properties = BEAN_PROPERTIES.get(beanClass);
+        if (properties == null) {
+            BeanInfo beanInfo;
+            try {
+                beanInfo = Introspector.getBeanInfo(beanClass, Object.class);
+            } catch (IntrospectionException e) {
+                throw new IOException("Can't introspect " + beanClass.getName(), e);
+            }
+            List<PropertyDescriptor> readable = new ArrayList<>();
+            for (PropertyDescriptor property : beanInfo.getPropertyDescriptors()) {
+                if (property.getReadMethod() != null) {
+                    readable.add(property);
+                }
+            }
+            properties = readable.toArray(new PropertyDescriptor[0]);
+            BEAN_PROPERTIES.put(beanClass, properties);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,134 @@
+package com.freemarker;
+
+import freemarker.core.HTMLOutputFormat;
+import freemarker.core.TemplateHTMLOutputModel;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The HTML output format with a faster escaper; {@link FreemarkderDemo#createConfiguration(freemarker.cache.TemplateLoader)}
+ * registers it as a custom output format named "HTML", so it replaces the stock HTMLOutputFormat wherever the
+ * templates ask for HTML (.ftlh, &lt;#ftl output_format="HTML"&gt;, &lt;#outputformat "HTML"&gt;). The output is the same: &lt; &gt; &amp; " and '
+ * are escaped as &amp;lt; &amp;gt; &amp;amp; &amp;quot; and &amp;#39;.
+ *
+ * Every ${...} of an .ftlh template goes through {@link #output(String, Writer)}. The stock one looks at every char
+ * with a chain of comparisons, and writes char by char into the Writer. This one:
+ * - decides if a char needs escaping with one lookup in a table indexed by the char (all of them are below 64, so
+ *   the table is a bit set in a long), and finds its escaped form in another;
+ * - writes the runs between the escaped chars with one Writer.write(String, off, len) each;
+ * - writes the String as it is, with one call, when there's nothing to escape, which is the common case of text
+ *   content; {@link #escapePlainText(String)} returns the same String instance then.
+ *
+ * Markup values (?no_esc and the like) are created with this format too. A TemplateHTMLOutputModel created with
+ * HTMLOutputFormat.INSTANCE in Java code is of another format as far as FreeMarker is concerned, so it couldn't be
+ * printed in these templates; {@link AdapterObjectWrapper} converts it to this format when it's put into the
+ * data-model. Creating it with {@link #INSTANCE} saves the conversion.
+ *
+ * Benchmarked against the stock escaper in src/jmh/java/com/freemarker/HtmlEscapeBenchmark.java.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 19:40
+ */
+public class FastHtmlOutputFormat extends HTMLOutputFormat {
+
+    public static final FastHtmlOutputFormat INSTANCE = new FastHtmlOutputFormat();
+
+    // The escaped form of the chars below ESCAPES.length, null if the char is printed as it is
+    private static final String[] ESCAPES = new String[64];
+
+    // Bit c is set if char c (below 64) is escaped; testing a bit is cheaper than loading from ESCAPES
+    private static final long ESCAPED_CHARS;
+
+    static {
+        ESCAPES['<'] = "&lt;";
+        ESCAPES['>'] = "&gt;";
+        ESCAPES['&'] = "&amp;";
+        ESCAPES['"'] = "&quot;";
+        ESCAPES['\''] = "&#39;";
+        long escapedChars = 0;
+        for (int c = 0; c < ESCAPES.length; c++) {
+            if (ESCAPES[c] != null) {
+                escapedChars |= 1L << c;
+            }
+        }
+        ESCAPED_CHARS = escapedChars;
+    }
+
+    protected FastHtmlOutputFormat() {
+    }
+
+    @Override
+    public void output(String textToEsc, Writer out) throws IOException {
+        int length = textToEsc.length();
+        int next = indexOfEscaped(textToEsc, 0, length);
+        if (next == length) {
+            out.write(textToEsc);
+            return;
+        }
+        int runStart = 0;
+        while (next < length) {
+            if (next > runStart) {
+                out.write(textToEsc, runStart, next - runStart);
+            }
+            out.write(ESCAPES[textToEsc.charAt(next)]);
+            runStart = next + 1;
+            next = indexOfEscaped(textToEsc, runStart, length);
+        }
+        if (length > runStart) {
+            out.write(textToEsc, runStart, length - runStart);
+        }
+    }
+
+    @Override
+    public String escapePlainText(String plainTextContent) {
+        return escape(plainTextContent);
+    }
+
+    /**
+     * The HTML escaped form of text, or text itself if nothing needs escaping.
+     */
+    public static String escape(String text) {
+        int length = text.length();
+        int next = indexOfEscaped(text, 0, length);
+        if (next == length) {
+            return text;
+        }
+        StringBuilder escaped = new StringBuilder(length + 16);
+        int runStart = 0;
+        while (next < length) {
+            escaped.append(text, runStart, next).append(ESCAPES[text.charAt(next)]);
+            runStart = next + 1;
+            next = indexOfEscaped(text, runStart, length);
+        }
+        return escaped.append(text, runStart, length).toString();
+    }
+
+    @Override
+    protected TemplateHTMLOutputModel newTemplateMarkupOutputModel(String plainTextContent, String markupContent) {
+        return new FastHtmlOutputModel(plainTextContent, markupContent);
+    }
+
+    private static int indexOfEscaped(String text, int from, int length) {
+        for (int i = from; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 64 && (ESCAPED_CHARS & (1L << c)) != 0) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    // Like TemplateHTMLOutputModel, but of this output format, so it can be printed in our templates
+    private static final class FastHtmlOutputModel extends TemplateHTMLOutputModel {
+
+        FastHtmlOutputModel(String plainTextContent, String markupContent) {
+            super(plainTextContent, markupContent);
+        }
+
+        @Override
+        public HTMLOutputFormat getOutputFormat() {
+            return INSTANCE;
+        }
+    }
+}
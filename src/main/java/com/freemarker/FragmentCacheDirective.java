@@ -0,0 +1,217 @@
+package com.freemarker;
+
+import freemarker.core.Environment;
+import freemarker.template.TemplateDirectiveBody;
+import freemarker.template.TemplateDirectiveModel;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateNumberModel;
+import freemarker.template.TemplateScalarModel;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the output of its body, for template regions that render the same for everyone (headers, footers, menus):
+ * <pre>
+ * &lt;@cache key="head" ttl=3600&gt;
+ *   &lt;head&gt;...&lt;/head&gt;
+ * &lt;/@cache&gt;
+ * </pre>
+ * {@link FreemarkderDemo#createConfiguration(freemarker.cache.TemplateLoader)} registers it as the "cache" shared
+ * variable.
+ *
+ * The output is cached by the name of the template the directive is in, the locale of the render and the key, so the
+ * key only has to be unique within its template, and must contain anything else the body depends on (like the user's
+ * id, if the body prints it). ttl is in seconds; the default is {@link #DEFAULT_TTL_SECONDS}. Changing the template
+ * doesn't invalidate what's cached, only the ttl or {@link #invalidate} does.
+ *
+ * The output is kept both as a String and UTF-8 encoded. On a hit, when the output goes to a {@link Utf8ChannelWriter},
+ * the bytes are copied straight into its buffer, otherwise the chars are written to the Writer. On a miss the body is
+ * rendered into a StringWriter; if it fails, nothing is cached. Concurrent misses of the same key all render the body,
+ * the last one wins.
+ *
+ * The cache is a LRU bounded by the size of the cached outputs (2 bytes per char plus the UTF-8 bytes).
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 16:10
+ */
+public class FragmentCacheDirective implements TemplateDirectiveModel {
+
+    public static final long DEFAULT_TTL_SECONDS = 300;
+
+    private static final String PARAM_KEY = "key";
+    private static final String PARAM_TTL = "ttl";
+
+    private final long maximumWeight;
+
+    private final LongSupplier nanoTime;
+
+    // In access order, so the first entry is the least recently used one
+    private final LinkedHashMap<String, Fragment> fragments = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * @param maximumWeight the maximum number of bytes the cached outputs may take
+     */
+    public FragmentCacheDirective(long maximumWeight) {
+        this(maximumWeight, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime the clock the ttl is measured with, for the tests
+     */
+    FragmentCacheDirective(long maximumWeight, LongSupplier nanoTime) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximumWeight must be positive: " + maximumWeight);
+        }
+        this.maximumWeight = maximumWeight;
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // The signature of TemplateDirectiveModel
+    public void execute(Environment env, Map params, TemplateModel[] loopVars, TemplateDirectiveBody body)
+            throws TemplateException, IOException {
+        String key = null;
+        long ttlSeconds = DEFAULT_TTL_SECONDS;
+        for (Object param : params.entrySet()) {
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) param;
+            String name = (String) entry.getKey();
+            TemplateModel value = (TemplateModel) entry.getValue();
+            if (PARAM_KEY.equals(name)) {
+                if (!(value instanceof TemplateScalarModel)) {
+                    throw new TemplateModelException("The \"" + PARAM_KEY + "\" parameter must be a string.");
+                }
+                key = ((TemplateScalarModel) value).getAsString();
+            } else if (PARAM_TTL.equals(name)) {
+                if (!(value instanceof TemplateNumberModel)) {
+                    throw new TemplateModelException("The \"" + PARAM_TTL + "\" parameter must be a number.");
+                }
+                ttlSeconds = ((TemplateNumberModel) value).getAsNumber().longValue();
+                if (ttlSeconds <= 0) {
+                    throw new TemplateModelException("The \"" + PARAM_TTL + "\" parameter must be positive.");
+                }
+            } else {
+                throw new TemplateModelException("Unsupported parameter: " + name);
+            }
+        }
+        if (key == null) {
+            throw new TemplateModelException("The \"" + PARAM_KEY + "\" parameter is required.");
+        }
+        if (loopVars.length != 0) {
+            throw new TemplateModelException("This directive doesn't allow loop variables.");
+        }
+        if (body == null) {
+            return;
+        }
+
+        Writer out = env.getOut();
+        key = cacheKey(env.getCurrentTemplate().getName(), env.getLocale(), key);
+        long now = nanoTime.getAsLong();
+        Fragment fragment = get(key, now);
+        if (fragment != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+            StringWriter rendered = new StringWriter();
+            body.render(rendered);
+            fragment = new Fragment(rendered.toString(), now + TimeUnit.SECONDS.toNanos(ttlSeconds));
+            put(key, fragment);
+        }
+
+        if (out instanceof Utf8ChannelWriter) {
+            ((Utf8ChannelWriter) out).writeEncoded(fragment.utf8, 0, fragment.utf8.length);
+        } else {
+            out.write(fragment.chars);
+        }
+    }
+
+    /**
+     * Removes the output cached for key by the directive in the template templateName, rendered in locale.
+     */
+    public synchronized void invalidate(String templateName, Locale locale, String key) {
+        Fragment fragment = fragments.remove(cacheKey(templateName, locale, key));
+        if (fragment != null) {
+            weight -= fragment.weight;
+        }
+    }
+
+    public synchronized void clear() {
+        fragments.clear();
+        weight = 0;
+    }
+
+    public synchronized int getSize() {
+        return fragments.size();
+    }
+
+    public synchronized long getWeightedSize() {
+        return weight;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    private static String cacheKey(String templateName, Locale locale, String key) {
+        return templateName + '|' + locale + '|' + key;
+    }
+
+    private synchronized Fragment get(String key, long now) {
+        Fragment fragment = fragments.get(key);
+        if (fragment != null && now - fragment.expiresAt >= 0) {
+            fragments.remove(key);
+            weight -= fragment.weight;
+            return null;
+        }
+        return fragment;
+    }
+
+    private synchronized void put(String key, Fragment fragment) {
+        if (fragment.weight > maximumWeight) {
+            return;
+        }
+        Fragment previous = fragments.put(key, fragment);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += fragment.weight;
+        for (Iterator<Fragment> lru = fragments.values().iterator(); weight > maximumWeight && lru.hasNext(); ) {
+            weight -= lru.next().weight;
+            lru.remove();
+        }
+    }
+
+    private static final class Fragment {
+
+        final String chars;
+        final byte[] utf8;
+        final long expiresAt;
+        final long weight;
+
+        Fragment(String chars, long expiresAt) {
+            this.chars = chars;
+            this.utf8 = chars.getBytes(StandardCharsets.UTF_8);
+            this.expiresAt = expiresAt;
+            this.weight = 2L * chars.length() + utf8.length;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.freemarker;
 
 import freemarker.cache.StringTemplateLoader;
+import freemarker.cache.TemplateLoader;
 import freemarker.template.Configuration;
+import freemarker.template.ObjectWrapper;
 import freemarker.template.Template;
 import freemarker.template.TemplateException;
 import freemarker.template.TemplateExceptionHandler;
@@ -11,7 +13,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -24,6 +30,11 @@ import java.util.Map;
  */
 public class FreemarkderDemo {
 
+    private static final LazyDataModel.Definition LAZY_DATA_MODEL = LazyDataModel.builder()
+            .put("user", () -> "Big Joe")
+            .put("latestProduct", FreemarkderDemo::createLatestProduct)
+            .build();
+
     public static void main(String[] args) throws IOException, TemplateException {
 
         Configuration cfg = createConfiguration();
@@ -64,9 +75,23 @@ public class FreemarkderDemo {
         // In other times, like in typical Web applications, you must not close out.
         // FreeMarker calls out.flush() after a successful template execution (but tis can be disabled in Configuration),
         // so you don't need to worry about that.
-        Writer out = new OutputStreamWriter(System.out);
-        temp.process(root, out);
 
+        // A new OutputStreamWriter means a new encoder and new buffers for every render, renderTo reuses them:
+        renderTo(temp, root, Channels.newChannel(System.out));
+
+    }
+
+    /**
+     * Merges the data-model into the template, and writes the output into channel as UTF-8.
+     * The Writer given to the template is a pooled {@link Utf8ChannelWriter}, so unlike
+     * with new OutputStreamWriter(...) nothing is allocated for the encoding. The static text of the template is not
+     * encoded at all, its UTF-8 bytes are copied from the {@link PreEncodedText} of the template. The channel is not closed.
+     */
+    public static void renderTo(Template template, Object dataModel, WritableByteChannel channel)
+            throws IOException, TemplateException {
+        try (Utf8ChannelWriter out = Utf8ChannelWriter.acquire(channel, PreEncodedText.of(template))) {
+            template.process(dataModel, out);
+        }
     }
 
     /**
@@ -81,7 +106,7 @@ public class FreemarkderDemo {
      * For example the price property (getPrice()) of product can be get as product.price.
      * (The actions of the beans can be exposed as well; see much later here)
      */
-    private static Map<String, Object> createDataModel() {
+    public static Map<String, Object> createDataModel() {
         // Create the root hash. We use a Map here, but it could be a JavaBean too.
         Map<String, Object> root = new HashMap<>();
 
@@ -89,9 +114,7 @@ public class FreemarkderDemo {
         root.put("user", "Big Joe");
 
         // Create the "latestProduct" hash. We use a JavaBean here, but it could be a Map too.
-        Product latest = new Product();
-        latest.setUrl("products/greenmouse.html");
-        latest.setName("green mouse");
+        Product latest = createLatestProduct();
         // and put it into the root
         root.put("latestProduct", latest);
 
@@ -99,21 +122,27 @@ public class FreemarkderDemo {
     }
 
     /**
-     * CreateAConfigurationInstance
+     * The same data-model as {@link #createDataModel()}, but "user" and "latestProduct" are only built if the
+     * template reads them, and at most once per render. Create a new one for every render.
      */
-    public static Configuration createConfiguration() throws IOException {
-
-        // Create your Configuration instance, and specify if up to what FreeMarker
-        // version (here 2.3.29) do you want to apply the fixes that are not 100%
-        // backward-compatible. See the Configuration JavaDoc for details.
-        Configuration cfg = new Configuration(Configuration.VERSION_2_3_29);
+    public static LazyDataModel createLazyDataModel(ObjectWrapper objectWrapper) {
+        return LAZY_DATA_MODEL.newModel(objectWrapper);
+    }
 
-        // Specify the source where the template files come from. Here I set a
-        // plain directory for it, but non-file-system sources are possible too:
-        //cfg.setDirectoryForTemplateLoading(new File("/where/you/store/templates"));
+    private static Product createLatestProduct() {
+        Product latest = new Product();
+        latest.setUrl("products/greenmouse.html");
+        latest.setName("green mouse");
+        return latest;
+    }
 
-        StringTemplateLoader templateLoader = new StringTemplateLoader();
-        templateLoader.putTemplate("test.ftlh", "<html>\n" +
+    /**
+     * The templates of this demo, by template name. They are registered in a StringTemplateLoader by
+     * {@link #createConfiguration()}, and written into the template snapshot by {@link TemplateSnapshot}.
+     */
+    public static Map<String, String> createTemplateSources() {
+        Map<String, String> templates = new LinkedHashMap<>();
+        templates.put("test.ftlh", "<html>\n" +
                 "<head>\n" +
                 "  <title>Welcome!</title>\n" +
                 "</head>\n" +
@@ -123,8 +152,70 @@ public class FreemarkderDemo {
                 "  <a href=\"${latestProduct.url}\">${latestProduct.name}</a>!\n" +
                 "</body>\n" +
                 "</html>");
+        return templates;
+    }
+
+    /**
+     * CreateAConfigurationInstance
+     */
+    public static Configuration createConfiguration() throws IOException {
+
+        // Specify the source where the template files come from. Here I set a
+        // plain directory for it, but non-file-system sources are possible too:
+        //cfg.setDirectoryForTemplateLoading(new File("/where/you/store/templates"));
+
+        StringTemplateLoader templateLoader = new StringTemplateLoader();
+        for (Map.Entry<String, String> template : createTemplateSources().entrySet()) {
+            templateLoader.putTemplate(template.getKey(), template.getValue());
+        }
+        return createConfiguration(templateLoader);
+    }
+
+    /**
+     * Same as {@link #createConfiguration()}, but the templates come from the snapshot written at build time
+     * (see {@link TemplateSnapshot#main(String[])}), and all of them are parsed before this method returns,
+     * so the first request doesn't pay for it. The startup itself is no faster, see {@link TemplateSnapshot}.
+     * Falls back to {@link #createConfiguration()} when the snapshot is not on the classpath (like when running from
+     * the IDE without a Maven build).
+     */
+    public static Configuration createConfigurationFromSnapshot() throws IOException {
+        TemplateSnapshot snapshot = TemplateSnapshot.load();
+        if (snapshot == null) {
+            return createConfiguration();
+        }
+        Configuration cfg = createConfiguration(snapshot.createTemplateLoader());
+        snapshot.warm(cfg);
+        return cfg;
+    }
+
+    /**
+     * Renders every template of {@link #createTemplateSources()} for
+     * {@link TemplateWarmup#DEFAULT_TIME_PER_TEMPLATE_MILLIS} ms with synthetic data-models, before the instance takes
+     * traffic. Call it right after creating the Configuration, and report ready only when
+     * {@link TemplateWarmup#isReady()}. See {@link TemplateWarmup} for warming up with recorded data-models instead.
+     */
+    public static TemplateWarmup warmUp(Configuration cfg) throws IOException {
+        TemplateWarmup warmup = new TemplateWarmup(cfg, createTemplateSources().keySet());
+        warmup.run();
+        return warmup;
+    }
+
+    /**
+     * The settings shared by all the ways of creating the Configuration, only the template loader differs.
+     */
+    public static Configuration createConfiguration(TemplateLoader templateLoader) {
+
+        // Create your Configuration instance, and specify if up to what FreeMarker
+        // version (here 2.3.29) do you want to apply the fixes that are not 100%
+        // backward-compatible. See the Configuration JavaDoc for details.
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_29);
+
         cfg.setTemplateLoader(templateLoader);
 
+        // Keep at most ~64 MB of parsed templates, and see how the cache does with
+        // ((WeightedTinyLfuCacheStorage) cfg.getCacheStorage()).getStats():
+        cfg.setCacheStorage(new WeightedTinyLfuCacheStorage(64L * 1024 * 1024, 1024));
+
         // From here we will set the settings recommended for new projects. These
         // aren't the defaults for backward compatibilty.
 
@@ -145,6 +236,20 @@ public class FreemarkderDemo {
         // Do not fall back to higher scopes when reading a null loop variable:
         cfg.setFallbackOnNullLoopVariable(false);
 
+        // Beans annotated with @TemplateBean (like Product) are wrapped into their generated adapters,
+        // instead of the reflection based BeanModel:
+        AdapterObjectWrapper objectWrapper = new AdapterObjectWrapper(Configuration.VERSION_2_3_29);
+        objectWrapper.writeProtect();
+        cfg.setObjectWrapper(objectWrapper);
+
+        // The HTML output format is the faster escaper of FastHtmlOutputFormat, instead of the stock
+        // HTMLOutputFormat (the output is the same). Registered under the name "HTML", it's the one of the .ftlh
+        // templates, of <#ftl output_format="HTML"> and of <#outputformat "HTML">:
+        cfg.setRegisteredCustomOutputFormats(Collections.singletonList(FastHtmlOutputFormat.INSTANCE));
+
+        // <@cache key=... ttl=...>...</@cache> renders its body once, then serves it from memory (at most ~16 MB):
+        cfg.setSharedVariable("cache", new FragmentCacheDirective(16L * 1024 * 1024));
+
         return cfg;
     }
 }
@@ -0,0 +1,174 @@
+package com.freemarker;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link RenderMetricsRegistry} that keeps the metrics in memory, per template name: an HDR latency histogram,
+ * the number of renders, the total output size, the errors by exception class, and the reads per top-level
+ * data-model variable.
+ *
+ * Recording doesn't lock: the histograms are ConcurrentHistogram-s (wait-free recording) and the counters are
+ * LongAdder-s. The histograms keep 2 significant digits from 1 microsecond up, and resize themselves to the
+ * range of the values actually recorded, which usually means around 10 KB per template.
+ *
+ * {@link #getStats(String)} and {@link #getAllStats()} return copies, for reports or to export elsewhere.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 15:40
+ */
+public class InMemoryRenderMetricsRegistry implements RenderMetricsRegistry {
+
+    private static final long LOWEST_DISCERNIBLE_NANOS = 1000;
+
+    private final ConcurrentMap<String, TemplateMetrics> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordRender(String templateName, long durationNanos, long outputSize) {
+        TemplateMetrics templateMetrics = metricsOf(templateName);
+        templateMetrics.latency.recordValue(Math.max(LOWEST_DISCERNIBLE_NANOS, durationNanos));
+        templateMetrics.renders.increment();
+        templateMetrics.outputSize.add(outputSize);
+    }
+
+    @Override
+    public void recordError(String templateName, Throwable error) {
+        counterOf(metricsOf(templateName).errors, error.getClass().getName()).increment();
+    }
+
+    @Override
+    public void recordModelAccess(String templateName, String variableName) {
+        counterOf(metricsOf(templateName).modelAccesses, variableName).increment();
+    }
+
+    /**
+     * @return the metrics of templateName so far, or null if it was never rendered
+     */
+    public TemplateStats getStats(String templateName) {
+        TemplateMetrics templateMetrics = metrics.get(templateName);
+        return templateMetrics != null ? templateMetrics.snapshot(templateName) : null;
+    }
+
+    /**
+     * @return the metrics of every template rendered so far, by template name
+     */
+    public Map<String, TemplateStats> getAllStats() {
+        Map<String, TemplateStats> stats = new TreeMap<>();
+        metrics.forEach((name, templateMetrics) -> stats.put(name, templateMetrics.snapshot(name)));
+        return stats;
+    }
+
+    public void reset() {
+        metrics.clear();
+    }
+
+    private TemplateMetrics metricsOf(String templateName) {
+        TemplateMetrics templateMetrics = metrics.get(templateName);
+        return templateMetrics != null ? templateMetrics : metrics.computeIfAbsent(templateName, n -> new TemplateMetrics());
+    }
+
+    // Like metricsOf, get first: computeIfAbsent locks the bin even when the key is there (on Java 8)
+    private static LongAdder counterOf(ConcurrentMap<String, LongAdder> counters, String key) {
+        LongAdder counter = counters.get(key);
+        return counter != null ? counter : counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    private static final class TemplateMetrics {
+
+        final ConcurrentHistogram latency;
+        final LongAdder renders = new LongAdder();
+        final LongAdder outputSize = new LongAdder();
+        final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+        final ConcurrentMap<String, LongAdder> modelAccesses = new ConcurrentHashMap<>();
+
+        TemplateMetrics() {
+            latency = new ConcurrentHistogram(LOWEST_DISCERNIBLE_NANOS, 2 * LOWEST_DISCERNIBLE_NANOS, 2);
+            latency.setAutoResize(true);
+        }
+
+        TemplateStats snapshot(String templateName) {
+            return new TemplateStats(templateName, latency.copy(), renders.sum(), outputSize.sum(),
+                    sums(errors), sums(modelAccesses));
+        }
+
+        private static Map<String, Long> sums(Map<String, LongAdder> adders) {
+            Map<String, Long> sums = new TreeMap<>();
+            adders.forEach((key, adder) -> sums.put(key, adder.sum()));
+            return Collections.unmodifiableMap(sums);
+        }
+    }
+
+    /**
+     * The metrics of one template at one point in time.
+     */
+    public static final class TemplateStats {
+
+        private final String templateName;
+        private final Histogram latency;
+        private final long renderCount;
+        private final long outputSize;
+        private final Map<String, Long> errors;
+        private final Map<String, Long> modelAccesses;
+
+        TemplateStats(String templateName, Histogram latency, long renderCount, long outputSize,
+                      Map<String, Long> errors, Map<String, Long> modelAccesses) {
+            this.templateName = templateName;
+            this.latency = latency;
+            this.renderCount = renderCount;
+            this.outputSize = outputSize;
+            this.errors = errors;
+            this.modelAccesses = modelAccesses;
+        }
+
+        public String getTemplateName() {
+            return templateName;
+        }
+
+        /**
+         * @return the render durations in nanoseconds
+         */
+        public Histogram getLatency() {
+            return latency;
+        }
+
+        public long getLatencyPercentile(double percentile) {
+            return latency.getValueAtPercentile(percentile);
+        }
+
+        public long getRenderCount() {
+            return renderCount;
+        }
+
+        public long getOutputSize() {
+            return outputSize;
+        }
+
+        /**
+         * @return the number of failed renders by exception class name
+         */
+        public Map<String, Long> getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return the number of reads by top-level data-model variable name
+         */
+        public Map<String, Long> getModelAccesses() {
+            return modelAccesses;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: renders=%d, p50=%.3f ms, p99=%.3f ms, max=%.3f ms, output=%d, errors=%s, modelAccesses=%s",
+                    templateName, renderCount, latency.getValueAtPercentile(50) / 1e6,
+                    latency.getValueAtPercentile(99) / 1e6, latency.getMaxValue() / 1e6, outputSize, errors, modelAccesses);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.freemarker;
+
+import freemarker.template.ObjectWrapper;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A data-model root that builds its top-level variables only when the template reads them.
+ *
+ * The suppliers are registered once (they can be shared by all renders, see {@link #builder()}), and a new
+ * LazyDataModel is created per render with {@link Definition#newModel(ObjectWrapper)}. A variable is fetched
+ * from its supplier and wrapped on the first read, then the same TemplateModel is returned for the rest of
+ * that render. Variables the template never touches cost nothing.
+ *
+ * Pass it to Template.process as the root, like any other TemplateHashModel:
+ * <pre>
+ * temp.process(DEFINITION.newModel(cfg.getObjectWrapper()), out);
+ * </pre>
+ *
+ * Like the Environment it's used by, an instance is meant for a single render on a single thread; it's not thread-safe.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 11:10
+ */
+public final class LazyDataModel implements TemplateHashModel {
+
+    // Marks a variable whose supplier returned null, so we don't call it again
+    private static final TemplateModel NULL = new TemplateModel() {
+    };
+
+    private final Map<String, Supplier<?>> suppliers;
+
+    private final ObjectWrapper wrapper;
+
+    private Map<String, TemplateModel> resolved;
+
+    private LazyDataModel(Map<String, Supplier<?>> suppliers, ObjectWrapper wrapper) {
+        this.suppliers = suppliers;
+        this.wrapper = wrapper;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public TemplateModel get(String key) throws TemplateModelException {
+        TemplateModel model = resolved != null ? resolved.get(key) : null;
+        if (model == null) {
+            Supplier<?> supplier = suppliers.get(key);
+            if (supplier == null) {
+                return null;
+            }
+            Object value = supplier.get();
+            model = value != null ? wrapper.wrap(value) : NULL;
+            if (resolved == null) {
+                resolved = new HashMap<>(4);
+            }
+            resolved.put(key, model);
+        }
+        return model != NULL ? model : null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return suppliers.isEmpty();
+    }
+
+    /**
+     * @return whether the variable was already read (and so built) during this render
+     */
+    public boolean isResolved(String key) {
+        return resolved != null && resolved.containsKey(key);
+    }
+
+    /**
+     * The immutable set of suppliers, it's safe to share it between threads and renders.
+     */
+    public static final class Definition {
+
+        private final Map<String, Supplier<?>> suppliers;
+
+        private Definition(Map<String, Supplier<?>> suppliers) {
+            this.suppliers = suppliers;
+        }
+
+        public LazyDataModel newModel(ObjectWrapper wrapper) {
+            return new LazyDataModel(suppliers, wrapper);
+        }
+    }
+
+    public static final class Builder {
+
+        private final Map<String, Supplier<?>> suppliers = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder put(String name, Supplier<?> supplier) {
+            suppliers.put(name, supplier);
+            return this;
+        }
+
+        public Definition build() {
+            return new Definition(Collections.unmodifiableMap(new LinkedHashMap<>(suppliers)));
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.freemarker;
+
+import freemarker.cache.TemplateLoader;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * A TemplateLoader that serves all templates from one memory-mapped pack file, in the {@link TemplateSnapshot} format
+ * (an index, then the UTF-8 sources concatenated). Use it instead of the StringTemplateLoader of
+ * {@link FreemarkderDemo#createConfiguration()} by passing it to {@link FreemarkderDemo#createConfiguration(TemplateLoader)}.
+ *
+ * With tens of thousands of templates, a file per template means as many open/read/close calls (and directory
+ * lookups) at first use. Here the pack is opened and mapped once, the index is read into a HashMap, and a template
+ * is decoded right from the mapped pages when FreeMarker asks for it; the OS pages it in on first touch, and keeps
+ * it in the page cache shared by all the JVMs of the host.
+ *
+ * Create the pack with {@link #pack(Path, Charset, Path)} (or {@link TemplateSnapshot#write}). The sources are always
+ * UTF-8 in the pack, so the encoding FreeMarker asks for is ignored. A pack can't be larger than 2 GB.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 15:05
+ */
+public class MappedTemplateLoader implements TemplateLoader, Closeable {
+
+    private final Path packFile;
+
+    private final MappedByteBuffer buffer;
+
+    private final Map<String, Entry> entries;
+
+    public MappedTemplateLoader(Path packFile) throws IOException {
+        this.packFile = packFile;
+        try (FileChannel channel = FileChannel.open(packFile, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Template pack is larger than 2 GB: " + packFile);
+            }
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            entries = readIndex(buffer.duplicate());
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated template pack: " + packFile, e);
+        }
+    }
+
+    /**
+     * Writes every file under templateDir into packFile, named by its path relative to templateDir, with '/' separators.
+     */
+    public static void pack(Path templateDir, Charset encoding, Path packFile) throws IOException {
+        Map<String, String> sources = new TreeMap<>();
+        long lastModified = 0;
+        try (Stream<Path> files = Files.walk(templateDir)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String name = templateDir.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                sources.put(name, new String(Files.readAllBytes(file), encoding));
+                lastModified = Math.max(lastModified, Files.getLastModifiedTime(file).toMillis());
+            }
+        }
+        try (OutputStream out = Files.newOutputStream(packFile)) {
+            TemplateSnapshot.write(sources, lastModified, new BufferedOutputStream(out));
+        }
+    }
+
+    @Override
+    public Object findTemplateSource(String name) {
+        return entries.get(name);
+    }
+
+    @Override
+    public long getLastModified(Object templateSource) {
+        return ((Entry) templateSource).lastModified;
+    }
+
+    @Override
+    public Reader getReader(Object templateSource, String encoding) throws IOException {
+        Entry entry = (Entry) templateSource;
+        ByteBuffer body = buffer.duplicate();
+        // Cast to Buffer, so it runs on Java 8 even if compiled with a later JDK
+        ((Buffer) body).limit(entry.offset + entry.length).position(entry.offset);
+        return new CharBufferReader(StandardCharsets.UTF_8.newDecoder().decode(body));
+    }
+
+    @Override
+    public void closeTemplateSource(Object templateSource) {
+    }
+
+    /**
+     * Nothing to release explicitly; the mapping goes away when the loader is garbage collected.
+     */
+    @Override
+    public void close() {
+    }
+
+    public int getTemplateCount() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "MappedTemplateLoader(" + packFile + ", " + entries.size() + " templates)";
+    }
+
+    private static Map<String, Entry> readIndex(ByteBuffer data) throws IOException {
+        if (data.getInt() != TemplateSnapshot.MAGIC) {
+            throw new IOException("Not a template pack");
+        }
+        int version = data.getInt();
+        if (version != TemplateSnapshot.VERSION) {
+            throw new IOException("Unsupported template pack version: " + version);
+        }
+
+        // An index entry takes at least 20 bytes
+        int count = data.getInt();
+        if (count < 0 || count > data.remaining() / 20) {
+            throw new IOException("Corrupt template pack, template count " + count + " is out of range");
+        }
+        String[] names = new String[count];
+        long[] lastModified = new long[count];
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            int nameLength = data.getInt();
+            if (nameLength < 0 || nameLength > data.remaining()) {
+                throw new IOException("Corrupt template pack, name length " + nameLength + " is out of range");
+            }
+            byte[] name = new byte[nameLength];
+            data.get(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+            lastModified[i] = data.getLong();
+            offsets[i] = data.getInt();
+            lengths[i] = data.getInt();
+            if (offsets[i] < 0 || lengths[i] < 0) {
+                throw new IOException("Corrupt template pack, the body of " + names[i] + " is out of range");
+            }
+        }
+
+        // Body offsets are relative to the end of the index
+        int bodiesStart = data.position();
+        Map<String, Entry> entries = new HashMap<>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; i++) {
+            if ((long) bodiesStart + offsets[i] + lengths[i] > data.limit()) {
+                throw new IOException("Truncated template pack, the body of " + names[i] + " is missing");
+            }
+            entries.put(names[i], new Entry(names[i], lastModified[i], bodiesStart + offsets[i], lengths[i]));
+        }
+        return entries;
+    }
+
+    private static final class Entry {
+
+        final String name;
+        final long lastModified;
+        final int offset;
+        final int length;
+
+        Entry(String name, long lastModified, int offset, int length) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    // A Reader over the decoded chars, without copying them into a String first
+    private static final class CharBufferReader extends Reader {
+
+        private final CharBuffer chars;
+
+        CharBufferReader(CharBuffer chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!chars.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, chars.remaining());
+            chars.get(cbuf, off, n);
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.freemarker;
+
+import freemarker.template.ObjectWrapper;
+import freemarker.template.Template;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Renders like {@link FreemarkderDemo#main(String[])} does, but reports every render into a {@link RenderMetricsRegistry}:
+ * its duration, the size of its output, its exception if it failed, and the top-level variables it read.
+ *
+ * With the {@link NoopRenderMetricsRegistry} it's a plain Template.process call. Otherwise the overhead is two
+ * System.nanoTime calls, a counting wrapper around the output and the data-model, and the registry calls.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 15:40
+ */
+public class MeteredRenderer {
+
+    private final RenderMetricsRegistry registry;
+
+    public MeteredRenderer(RenderMetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public RenderMetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Like {@link FreemarkderDemo#renderTo}; the output size is recorded in bytes.
+     */
+    public void renderTo(Template template, Object dataModel, WritableByteChannel channel)
+            throws IOException, TemplateException {
+        if (registry == NoopRenderMetricsRegistry.INSTANCE) {
+            FreemarkderDemo.renderTo(template, dataModel, channel);
+            return;
+        }
+        CountingChannel counting = new CountingChannel(channel);
+        long start = System.nanoTime();
+        try {
+            FreemarkderDemo.renderTo(template, meteredDataModel(template, dataModel), counting);
+        } catch (IOException | TemplateException | RuntimeException e) {
+            registry.recordError(template.getName(), e);
+            throw e;
+        } finally {
+            registry.recordRender(template.getName(), System.nanoTime() - start, counting.count);
+        }
+    }
+
+    /**
+     * Like Template.process; the output size is recorded in chars.
+     */
+    public void process(Template template, Object dataModel, Writer out) throws IOException, TemplateException {
+        if (registry == NoopRenderMetricsRegistry.INSTANCE) {
+            template.process(dataModel, out);
+            return;
+        }
+        CountingWriter counting = new CountingWriter(out);
+        long start = System.nanoTime();
+        try {
+            template.process(meteredDataModel(template, dataModel), counting);
+        } catch (IOException | TemplateException | RuntimeException e) {
+            registry.recordError(template.getName(), e);
+            throw e;
+        } finally {
+            registry.recordRender(template.getName(), System.nanoTime() - start, counting.count);
+        }
+    }
+
+    private Object meteredDataModel(Template template, Object dataModel) throws TemplateModelException {
+        if (!registry.isModelAccessRecorded() || dataModel == null) {
+            return dataModel;
+        }
+        TemplateHashModel root;
+        if (dataModel instanceof TemplateHashModel) {
+            root = (TemplateHashModel) dataModel;
+        } else {
+            ObjectWrapper objectWrapper = template.getObjectWrapper();
+            TemplateModel wrapped = objectWrapper.wrap(dataModel);
+            if (!(wrapped instanceof TemplateHashModel)) {
+                // Template.process will complain about it
+                return dataModel;
+            }
+            root = (TemplateHashModel) wrapped;
+        }
+        return root instanceof TemplateHashModelEx
+                ? new CountingHashModelEx((TemplateHashModelEx) root, template.getName(), registry)
+                : new CountingHashModel(root, template.getName(), registry);
+    }
+
+    private static class CountingHashModel implements TemplateHashModel {
+
+        final TemplateHashModel root;
+        private final String templateName;
+        private final RenderMetricsRegistry registry;
+
+        CountingHashModel(TemplateHashModel root, String templateName, RenderMetricsRegistry registry) {
+            this.root = root;
+            this.templateName = templateName;
+            this.registry = registry;
+        }
+
+        @Override
+        public TemplateModel get(String key) throws TemplateModelException {
+            TemplateModel value = root.get(key);
+            // FreeMarker asks the data-model first for every top-level name, shared variables too (like the
+            // directives of the Configuration), so only the names it has count
+            if (value != null) {
+                registry.recordModelAccess(templateName, key);
+            }
+            return value;
+        }
+
+        @Override
+        public boolean isEmpty() throws TemplateModelException {
+            return root.isEmpty();
+        }
+    }
+
+    // When the root can list its keys, so can the wrapper (.data_model?keys and the like)
+    private static final class CountingHashModelEx extends CountingHashModel implements TemplateHashModelEx {
+
+        CountingHashModelEx(TemplateHashModelEx root, String templateName, RenderMetricsRegistry registry) {
+            super(root, templateName, registry);
+        }
+
+        @Override
+        public int size() throws TemplateModelException {
+            return ((TemplateHashModelEx) root).size();
+        }
+
+        @Override
+        public TemplateCollectionModel keys() throws TemplateModelException {
+            return ((TemplateHashModelEx) root).keys();
+        }
+
+        @Override
+        public TemplateCollectionModel values() throws TemplateModelException {
+            return ((TemplateHashModelEx) root).values();
+        }
+    }
+
+    // Flushable, so the flushes of the render still reach the channel if it's Flushable
+    private static final class CountingChannel implements WritableByteChannel, Flushable {
+
+        private final WritableByteChannel channel;
+        long count;
+
+        CountingChannel(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int written = channel.write(src);
+            count += written;
+            return written;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (channel instanceof Flushable) {
+                ((Flushable) channel).flush();
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static final class CountingWriter extends Writer {
+
+        private final Writer out;
+        long count;
+
+        CountingWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
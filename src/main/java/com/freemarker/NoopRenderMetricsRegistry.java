@@ -0,0 +1,33 @@
+package com.freemarker;
+
+/**
+ * A {@link RenderMetricsRegistry} that records nothing. {@link MeteredRenderer} recognizes it, and then calls
+ * Template.process directly, so metering costs nothing when turned off.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 15:40
+ */
+public final class NoopRenderMetricsRegistry implements RenderMetricsRegistry {
+
+    public static final NoopRenderMetricsRegistry INSTANCE = new NoopRenderMetricsRegistry();
+
+    private NoopRenderMetricsRegistry() {
+    }
+
+    @Override
+    public void recordRender(String templateName, long durationNanos, long outputSize) {
+    }
+
+    @Override
+    public void recordError(String templateName, Throwable error) {
+    }
+
+    @Override
+    public void recordModelAccess(String templateName, String variableName) {
+    }
+
+    @Override
+    public boolean isModelAccessRecorded() {
+        return false;
+    }
+}
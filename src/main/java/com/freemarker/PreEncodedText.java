@@ -0,0 +1,110 @@
+package com.freemarker;
+
+import freemarker.core.CustomAttribute;
+import freemarker.template.Template;
+
+import javax.swing.tree.TreeNode;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The literal text blocks of a template, encoded to UTF-8 once.
+ *
+ * FreeMarker prints a static text block of the template (everything outside the FTL tags and interpolations) with
+ * Writer.write(char[]), always passing the same char[] that was created when the template was parsed. So, by that
+ * array, the Writer can find the bytes of the block, and copy them instead of encoding the chars again on every render.
+ * {@link Utf8ChannelWriter} does so, when {@link FreemarkderDemo#renderTo} gives it the PreEncodedText of the template.
+ *
+ * The blocks are found by walking the parsed tree, and their chars are read from the private "text" field of
+ * freemarker.core.TextBlock. If that's not possible (a FreeMarker version without that field), the result is empty, and
+ * the templates are rendered as before.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 16:40
+ */
+public final class PreEncodedText {
+
+    private static final PreEncodedText EMPTY = new PreEncodedText(new IdentityHashMap<>());
+
+    private static final Field TEXT = findTextField();
+
+    // Stored with the template, so it's created once, and goes away with the template
+    private static final CustomAttribute PRE_ENCODED_TEXT = new CustomAttribute(CustomAttribute.SCOPE_TEMPLATE);
+
+    private final Map<char[], byte[]> blocks;
+
+    private PreEncodedText(Map<char[], byte[]> blocks) {
+        this.blocks = blocks;
+    }
+
+    /**
+     * Returns the pre-encoded text blocks of template; encodes them on the first call for the template.
+     * Call it right after loading the template (like {@link TemplateSnapshot#warm} does), so no render pays for it.
+     */
+    public static PreEncodedText of(Template template) {
+        PreEncodedText preEncodedText = (PreEncodedText) PRE_ENCODED_TEXT.get(template);
+        if (preEncodedText == null) {
+            preEncodedText = encode(template);
+            // If two threads get here at the same time, both create the same content, so it doesn't matter which wins
+            PRE_ENCODED_TEXT.set(preEncodedText, template);
+        }
+        return preEncodedText;
+    }
+
+    /**
+     * @return the UTF-8 bytes of the text block whose chars are exactly text, or null if text is not a text block
+     */
+    public byte[] get(char[] text) {
+        return blocks.get(text);
+    }
+
+    public int getBlockCount() {
+        return blocks.size();
+    }
+
+    @SuppressWarnings("deprecation") // Template.getRootTreeNode is the only way to the parsed tree
+    private static PreEncodedText encode(Template template) {
+        if (TEXT == null) {
+            return EMPTY;
+        }
+        Map<char[], byte[]> blocks = new IdentityHashMap<>();
+        collect(template.getRootTreeNode(), blocks);
+        return blocks.isEmpty() ? EMPTY : new PreEncodedText(blocks);
+    }
+
+    private static void collect(TreeNode node, Map<char[], byte[]> blocks) {
+        if (node == null) {
+            return;
+        }
+        if (TEXT.getDeclaringClass().isInstance(node)) {
+            try {
+                char[] text = (char[]) TEXT.get(node);
+                if (text != null && text.length != 0) {
+                    blocks.put(text, new String(text).getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            collect(node.getChildAt(i), blocks);
+        }
+    }
+
+    @SuppressWarnings("deprecation") // TemplateElement is only checked for, as the type of the tree nodes
+    private static Field findTextField() {
+        try {
+            Field field = Class.forName("freemarker.core.TextBlock").getDeclaredField("text");
+            if (field.getType() != char[].class || !freemarker.core.TemplateElement.class
+                    .isAssignableFrom(field.getDeclaringClass())) {
+                return null;
+            }
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
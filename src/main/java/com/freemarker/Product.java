@@ -2,10 +2,12 @@ package com.freemarker;
 
 /**
  * Product bean; note that it must be a public class!
+ * It's annotated with {@link TemplateBean}, so templates access it through the generated ProductTemplateModel.
  *
  * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
  * @since 2021/7/14 18:08
  */
+@TemplateBean
 public class Product {
 
     private String url;
@@ -0,0 +1,51 @@
+package com.freemarker;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Executors to render on.
+ *
+ * The pom targets Java 8, so virtual threads (Java 21) are looked up reflectively, and when they are not available
+ * we fall back to platform threads.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 13:05
+ */
+public final class RenderExecutors {
+
+    private RenderExecutors() {
+    }
+
+    /**
+     * @return whether the running JVM has virtual threads
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        return findNewVirtualThreadPerTaskExecutor() != null;
+    }
+
+    /**
+     * A new executor that starts a virtual thread per task, or on Java versions without virtual threads,
+     * a new ForkJoinPool with one platform thread per available processor.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method method = findNewVirtualThreadPerTaskExecutor();
+        if (method != null) {
+            try {
+                return (ExecutorService) method.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // Same as not having it at all
+            }
+        }
+        return new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    private static Method findNewVirtualThreadPerTaskExecutor() {
+        try {
+            return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.freemarker;
+
+/**
+ * Where {@link MeteredRenderer} reports what happens during the renders. Implementations must be thread-safe,
+ * and cheap, as they are called on the render path: once per render, once per failed render, and once per
+ * top-level data-model variable read.
+ *
+ * The registries of this project are {@link NoopRenderMetricsRegistry} (the default, records nothing) and
+ * {@link InMemoryRenderMetricsRegistry}; to export into a monitoring system, implement this interface on top of it.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 15:40
+ */
+public interface RenderMetricsRegistry {
+
+    /**
+     * A render of templateName finished, successfully or not.
+     *
+     * @param durationNanos the wall-clock time of Template.process
+     * @param outputSize    the bytes written to the channel, or the chars written to the Writer
+     */
+    void recordRender(String templateName, long durationNanos, long outputSize);
+
+    /**
+     * A render of templateName failed with error.
+     */
+    void recordError(String templateName, Throwable error);
+
+    /**
+     * The render of templateName read the top-level data-model variable called variableName. Names the data-model
+     * doesn't have (a shared variable, a missing variable with a default) are not reported.
+     */
+    void recordModelAccess(String templateName, String variableName);
+
+    /**
+     * @return whether {@link #recordModelAccess} needs to be called; if not, the data-model isn't wrapped at all
+     */
+    default boolean isModelAccessRecorded() {
+        return true;
+    }
+}
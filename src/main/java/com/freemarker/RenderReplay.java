@@ -0,0 +1,136 @@
+package com.freemarker;
+
+import freemarker.cache.FileTemplateLoader;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Re-renders the data-models captured with {@link DataModelCodec.CaptureWriter}, and reports the throughput and the
+ * per-template latencies, to reproduce a production performance problem without the services behind the data-models:
+ * <pre>
+ * java com.freemarker.RenderReplay &lt;capture file&gt; [iterations] [threads] [template dir]
+ * </pre>
+ * Every thread renders all the captures iterations times (10 by default), after one untimed round to warm up.
+ * The templates come from the template dir, or if it's not given, from {@link FreemarkderDemo#createConfigurationFromSnapshot()}.
+ * The output is encoded like in production ({@link FreemarkderDemo#renderTo}), then thrown away.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 18:40
+ */
+public class RenderReplay {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 4) {
+            throw new IllegalArgumentException("Usage: RenderReplay <capture file> [iterations] [threads] [template dir]");
+        }
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Configuration cfg = args.length > 3
+                ? FreemarkderDemo.createConfiguration(new FileTemplateLoader(new File(args[3])))
+                : FreemarkderDemo.createConfigurationFromSnapshot();
+
+        List<DataModelCodec.Capture> captures;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(args[0])))) {
+            captures = DataModelCodec.readCaptures(in);
+        }
+        System.out.println("Replaying " + captures.size() + " captures, " + iterations + " iterations on "
+                + threads + " threads");
+
+        // Only the latencies, counting the variable reads would slow down the renders we measure
+        InMemoryRenderMetricsRegistry registry = new InMemoryRenderMetricsRegistry() {
+            @Override
+            public boolean isModelAccessRecorded() {
+                return false;
+            }
+        };
+        replay(cfg, captures, 1, 1, new MeteredRenderer(registry));
+        registry.reset();
+
+        long start = System.nanoTime();
+        long renders = replay(cfg, captures, iterations, threads, new MeteredRenderer(registry));
+        long elapsed = System.nanoTime() - start;
+
+        long bytes = 0;
+        for (InMemoryRenderMetricsRegistry.TemplateStats stats : registry.getAllStats().values()) {
+            bytes += stats.getOutputSize();
+            System.out.println(stats);
+        }
+        double seconds = elapsed / 1e9;
+        System.out.printf("%d renders in %.3f s: %.1f renders/s, %.1f MB/s%n",
+                renders, seconds, renders / seconds, bytes / seconds / (1024 * 1024));
+    }
+
+    /**
+     * Renders every capture iterations times on each of threads threads.
+     *
+     * @return the number of renders
+     */
+    public static long replay(Configuration cfg, List<DataModelCodec.Capture> captures, int iterations, int threads,
+                              MeteredRenderer renderer) throws Exception {
+        // Looked up once, so the template cache is not measured
+        List<Template> templates = new ArrayList<>(captures.size());
+        for (DataModelCodec.Capture capture : captures) {
+            templates.add(cfg.getTemplate(capture.getTemplateName()));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    WritableByteChannel discard = new DiscardingChannel();
+                    long renders = 0;
+                    for (int i = 0; i < iterations; i++) {
+                        for (int c = 0; c < captures.size(); c++) {
+                            renderer.renderTo(templates.get(c), captures.get(c).getDataModel(), discard);
+                            renders++;
+                        }
+                    }
+                    return renders;
+                }));
+            }
+            long renders = 0;
+            for (Future<Long> result : results) {
+                renders += result.get();
+            }
+            return renders;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Also used by TemplateWarmup
+    static final class DiscardingChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            // Cast to Buffer, so it runs on Java 8 even if compiled with a later JDK
+            ((Buffer) src).position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
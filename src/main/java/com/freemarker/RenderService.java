@@ -0,0 +1,333 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+
+import java.io.StringWriter;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
+
+/**
+ * Renders the templates of a Configuration (the {@link FreemarkderDemo#createConfiguration()} singleton) for many
+ * tenants, with admission control in front of Template.process:
+ * - at most maxConcurrentRenders renders run at the same time, the others wait in their tenant's queue;
+ * - a tenant can have at most maxQueuedPerTenant waiting renders, more are rejected right away with
+ *   a RejectedExecutionException, so a spike of one tenant can't pile up unbounded work;
+ * - when a render slot frees up, it goes to the waiting tenant that got the least render time so far, relative
+ *   to its weight ({@link #setTenantWeight(String, double)}, 1 by default).
+ *
+ * The last one is weighted fair queuing, with the render time as the cost: every tenant has a virtual time, which
+ * advances by (render nanos / weight) with each of its renders. As the duration is only known when the render is over,
+ * the tenant is charged with its average duration when the render starts, and corrected when it ends. So a tenant
+ * with huge templates gets fewer slots than one with small templates, instead of holding all of them. A tenant that
+ * becomes busy again after being idle starts from the current virtual time, it can't save up credit by being idle.
+ *
+ * A tenant is only tracked while it has renders waiting or running: once idle, its state (virtual time, average
+ * duration) is dropped, so a service that sees many tenants over time doesn't keep them all. Coming back, it's
+ * charged the initial cost again, and any render time it was ahead by is forgiven, which is at most about its last
+ * render. The weights set with {@link #setTenantWeight} are kept apart, until set back to 1.
+ *
+ * The renders run on the executor, by default the virtual thread executor of {@link RenderExecutors} (or a ForkJoinPool
+ * on Java versions without virtual threads). Picking the next tenant scans the waiting ones, which is fine for up to
+ * a few thousand busy tenants.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 17:40
+ */
+public class RenderService implements AutoCloseable {
+
+    // The cost charged for the first render of a tenant, before we know how long its renders take
+    private static final double INITIAL_COST_NANOS = 1_000_000;
+
+    // How much the last render counts in the average duration of a tenant's renders
+    private static final double COST_SMOOTHING = 0.2;
+
+    /**
+     * A render, with its output.
+     */
+    @FunctionalInterface
+    public interface RenderTask<T> {
+        T render(Template template) throws Exception;
+    }
+
+    private final Configuration cfg;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final int maxConcurrentRenders;
+    private final int maxQueuedPerTenant;
+    private final LongSupplier nanoTime;
+
+    // The tenants with renders waiting or running
+    private final Map<String, Tenant> tenants = new HashMap<>();
+    // The weights other than 1
+    private final Map<String, Double> weights = new HashMap<>();
+    // Tenants with waiting renders
+    private final Set<Tenant> backlogged = new LinkedHashSet<>();
+    private double virtualTime;
+    private int running;
+    private boolean closed;
+
+    /**
+     * Renders on a new virtual thread executor (see {@link RenderExecutors#newVirtualThreadPerTaskExecutor()}),
+     * which is shut down by {@link #close()}.
+     */
+    public RenderService(Configuration cfg, int maxConcurrentRenders, int maxQueuedPerTenant) {
+        this(cfg, RenderExecutors.newVirtualThreadPerTaskExecutor(), true, maxConcurrentRenders, maxQueuedPerTenant,
+                System::nanoTime);
+    }
+
+    /**
+     * @param executor the renders run on it; it's not shut down by this class
+     */
+    public RenderService(Configuration cfg, ExecutorService executor, int maxConcurrentRenders, int maxQueuedPerTenant) {
+        this(cfg, executor, false, maxConcurrentRenders, maxQueuedPerTenant, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime the clock the render durations are measured with, for the tests
+     */
+    RenderService(Configuration cfg, ExecutorService executor, int maxConcurrentRenders, int maxQueuedPerTenant,
+                  LongSupplier nanoTime) {
+        this(cfg, executor, false, maxConcurrentRenders, maxQueuedPerTenant, nanoTime);
+    }
+
+    private RenderService(Configuration cfg, ExecutorService executor, boolean ownsExecutor,
+                          int maxConcurrentRenders, int maxQueuedPerTenant, LongSupplier nanoTime) {
+        if (maxConcurrentRenders < 1) {
+            throw new IllegalArgumentException("maxConcurrentRenders must be at least 1, but was " + maxConcurrentRenders);
+        }
+        if (maxQueuedPerTenant < 0) {
+            throw new IllegalArgumentException("maxQueuedPerTenant can't be negative, but was " + maxQueuedPerTenant);
+        }
+        this.cfg = cfg;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.maxConcurrentRenders = maxConcurrentRenders;
+        this.maxQueuedPerTenant = maxQueuedPerTenant;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * A tenant with weight 2 gets twice as much render time as one with weight 1, when both have renders waiting.
+     */
+    public synchronized void setTenantWeight(String tenant, double weight) {
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException("weight must be positive, but was " + weight);
+        }
+        if (weight == 1) {
+            weights.remove(tenant);
+        } else {
+            weights.put(tenant, weight);
+        }
+        Tenant t = tenants.get(tenant);
+        if (t != null) {
+            t.weight = weight;
+        }
+    }
+
+    /**
+     * Like {@link FreemarkderDemo#renderTo}, when the tenant gets a render slot.
+     */
+    public CompletableFuture<Void> renderTo(String tenant, String templateName, Object dataModel,
+                                            WritableByteChannel channel) {
+        return submit(tenant, templateName, template -> {
+            FreemarkderDemo.renderTo(template, dataModel, channel);
+            return null;
+        });
+    }
+
+    public CompletableFuture<String> renderToString(String tenant, String templateName, Object dataModel) {
+        return submit(tenant, templateName, template -> {
+            StringWriter out = new StringWriter();
+            template.process(dataModel, out);
+            return out.toString();
+        });
+    }
+
+    /**
+     * Gets the template and runs task with it, when the tenant gets a render slot. The returned future fails with
+     * a RejectedExecutionException if the tenant has too many renders waiting already, or the service is closed.
+     */
+    public <T> CompletableFuture<T> submit(String tenant, String templateName, RenderTask<T> task) {
+        Job<T> job = new Job<>(templateName, task);
+        synchronized (this) {
+            if (closed) {
+                job.result.completeExceptionally(new RejectedExecutionException("The render service is closed"));
+                return job.result;
+            }
+            Tenant t = tenants.get(tenant);
+            if (t != null && t.queue.size() >= maxQueuedPerTenant && running >= maxConcurrentRenders) {
+                job.result.completeExceptionally(new RejectedExecutionException(
+                        "Tenant " + tenant + " has " + t.queue.size() + " renders waiting already"));
+                return job.result;
+            }
+            if (t == null) {
+                t = new Tenant(tenant, weights.getOrDefault(tenant, 1.0));
+                tenants.put(tenant, t);
+            }
+            job.tenant = t;
+            if (t.queue.isEmpty()) {
+                // No credit for the time it was idle
+                t.virtualTime = Math.max(t.virtualTime, virtualTime);
+                backlogged.add(t);
+            }
+            t.queue.add(job);
+            dispatch();
+        }
+        return job.result;
+    }
+
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    public synchronized int getQueuedCount(String tenant) {
+        Tenant t = tenants.get(tenant);
+        return t != null ? t.queue.size() : 0;
+    }
+
+    /**
+     * @return how many tenants have renders waiting or running
+     */
+    public synchronized int getActiveTenantCount() {
+        return tenants.size();
+    }
+
+    /**
+     * Stops accepting renders, and fails the waiting ones with a RejectedExecutionException. The running renders
+     * are finished. Shuts down the executor if it was created by this service.
+     */
+    @Override
+    public void close() {
+        List<Job<?>> dropped = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (Tenant t : backlogged) {
+                dropped.addAll(t.queue);
+                t.queue.clear();
+                if (t.running == 0) {
+                    tenants.remove(t.name);
+                }
+            }
+            backlogged.clear();
+        }
+        for (Job<?> job : dropped) {
+            job.result.completeExceptionally(new RejectedExecutionException("The render service is closed"));
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    // Called with the lock held
+    private void dispatch() {
+        while (running < maxConcurrentRenders && !backlogged.isEmpty()) {
+            Tenant next = null;
+            for (Tenant t : backlogged) {
+                if (next == null || t.virtualTime < next.virtualTime) {
+                    next = t;
+                }
+            }
+            Job<?> job = next.queue.poll();
+            if (next.queue.isEmpty()) {
+                backlogged.remove(next);
+            }
+            virtualTime = next.virtualTime;
+            job.charged = next.averageCostNanos / next.weight;
+            next.virtualTime += job.charged;
+            running++;
+            next.running++;
+            try {
+                executor.execute(job);
+            } catch (RejectedExecutionException e) {
+                running--;
+                next.running--;
+                next.virtualTime -= job.charged;
+                pruneIfIdle(next);
+                job.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private synchronized void finished(Job<?> job, long durationNanos) {
+        running--;
+        Tenant t = job.tenant;
+        t.running--;
+        t.virtualTime += durationNanos / t.weight - job.charged;
+        t.averageCostNanos += COST_SMOOTHING * (durationNanos - t.averageCostNanos);
+        pruneIfIdle(t);
+        if (!closed) {
+            dispatch();
+        }
+    }
+
+    // Called with the lock held
+    private void pruneIfIdle(Tenant t) {
+        if (t.running == 0 && t.queue.isEmpty()) {
+            tenants.remove(t.name);
+        }
+    }
+
+    private static final class Tenant {
+
+        final String name;
+        final ArrayDeque<Job<?>> queue = new ArrayDeque<>();
+        double weight;
+        double virtualTime;
+        double averageCostNanos = INITIAL_COST_NANOS;
+        int running;
+
+        Tenant(String name, double weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final class Job<T> implements Runnable {
+
+        final String templateName;
+        final RenderTask<T> task;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        Tenant tenant;
+        double charged;
+
+        Job(String templateName, RenderTask<T> task) {
+            this.templateName = templateName;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long start = nanoTime.getAsLong();
+            T output = null;
+            Throwable failure = null;
+            try {
+                output = task.render(cfg.getTemplate(templateName));
+            } catch (Throwable e) {
+                failure = e;
+            }
+            // Give the slot to the next render before the caller's callbacks run on this thread
+            finished(this, nanoTime.getAsLong() - start);
+            if (failure == null) {
+                result.complete(output);
+            } else {
+                result.completeExceptionally(failure);
+            }
+        }
+    }
+}
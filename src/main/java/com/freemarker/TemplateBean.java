@@ -0,0 +1,23 @@
+package com.freemarker;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a JavaBean for which {@link com.freemarker.processor.TemplateBeanProcessor} generates a TemplateHashModel
+ * adapter at compile time. The adapter, named like the bean plus "TemplateModel", calls the getters directly,
+ * and {@link AdapterObjectWrapper} uses it instead of the reflection based BeanModel.
+ *
+ * Only the bean properties are exposed (like product.name), not the methods (like product.getName()).
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 12:20
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface TemplateBean {
+}
@@ -0,0 +1,40 @@
+package com.freemarker;
+
+import java.util.ArrayDeque;
+
+/**
+ * Template names, as the #include and #import of a template refer to them.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:55
+ */
+final class TemplateNames {
+
+    private TemplateNames() {
+    }
+
+    /**
+     * Resolves an #include/#import path like FreeMarker's default template name format does: relative to the
+     * directory of the including template, unless it starts with '/'. Returns null for paths leaving the root.
+     */
+    static String resolve(String includingName, String path) {
+        int lastSlash = includingName.lastIndexOf('/');
+        String joined = path.startsWith("/") || lastSlash < 0
+                ? path
+                : includingName.substring(0, lastSlash + 1) + path;
+        ArrayDeque<String> segments = new ArrayDeque<>();
+        for (String segment : joined.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                if (segments.pollLast() == null) {
+                    return null;
+                }
+            } else {
+                segments.add(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+}
@@ -0,0 +1,521 @@
+package com.freemarker;
+
+import freemarker.core.CustomAttribute;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+
+import javax.swing.tree.TreeNode;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Finds the data-model paths a template reads, by walking its parsed tree, so the data-model builder can skip
+ * what the template doesn't need:
+ * <pre>
+ * TemplateReadSetAnalyzer.ReadSet reads = TemplateReadSetAnalyzer.readSetOf(template);
+ * if (reads.isRead("latestProduct.url")) {
+ *     ...
+ * }
+ * </pre>
+ * For the test.ftlh of {@link FreemarkderDemo} it's [latestProduct.name, latestProduct.url, user]. Run {@link #main}
+ * to print it for all the templates of {@link FreemarkderDemo#createTemplateSources()}.
+ *
+ * A path is a top-level variable followed by the keys read from it: ${a.b}, ${a["b"]} and ${a.b?upper_case} all read
+ * "a.b". An element of a listed sequence (or a value of a listed hash) is "[]": &lt;#list products as p&gt;${p.name}
+ * reads "products[].name". So is a key that's only known at runtime (a[i]).
+ *
+ * Not reported: loop variables (as such), macro and function parameters, lambda parameters, macro names, #import
+ * namespaces, the shared variables of the Configuration, and the variables set by #assign, #global and #local after
+ * they are set. What is read through such a variable is reported as the read of the whole assigned value. A variable
+ * is only taken as set after an assignment that surely ran: one earlier in the same block, or in an enclosing one.
+ * Before it, or after an assignment that may not have run (in an #if, a #list, a macro...), the variable may still
+ * come from the data-model, so it's reported: &lt;#if x??&gt;&lt;#assign user = user?upper_case&gt;&lt;/#if&gt;${user}
+ * reads [user, x]. Templates included with a literal name are analyzed too; the macros of #import-ed libraries are not.
+ *
+ * FreeMarker doesn't expose its tree to other packages, so the nodes are read by reflection (the same way as in
+ * {@link PreEncodedText}); it's written against 2.3.31. With a version whose tree can't be read, the read set is
+ * {@link ReadSet#isKnown() unknown}, and every path may be read.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 19:10
+ */
+public final class TemplateReadSetAnalyzer {
+
+    private static final CustomAttribute READ_SET = new CustomAttribute(CustomAttribute.SCOPE_TEMPLATE);
+
+    // The methods of freemarker.core.TemplateObject that give the parameters of a node; null if this FreeMarker
+    // version doesn't have them, then no template can be analyzed
+    private static final Method GET_PARAMETER_COUNT = findTemplateObjectMethod("getParameterCount");
+    private static final Method GET_PARAMETER_VALUE = findTemplateObjectMethod("getParameterValue", int.class);
+
+    private static final Map<String, Field> FIELDS = Collections.synchronizedMap(new HashMap<>());
+
+    // Returned by path(...) for reads of loop variables, parameters and the like, which are not in the data-model
+    private static final String LOCAL = new String("<local>");
+
+    private static final String ELEMENT = "[]";
+
+    // The elements whose children surely run when they do, so what they assign is set after them too
+    private static final Set<String> UNCONDITIONAL = new HashSet<>(Arrays.asList("MixedContent",
+            "AssignmentInstruction", "AutoEscBlock", "NoAutoEscBlock", "OutputFormatBlock", "EscapeBlock",
+            "NoEscapeBlock", "CompressedBlock"));
+
+    private final Configuration cfg;
+    private final Set<String> paths = new TreeSet<>();
+    private final Set<String> locals = new HashSet<>();
+    // Innermost first, one per block; a name maps to the path it stands for, or to LOCAL
+    private final Deque<Map<String, String>> scopes = new ArrayDeque<>();
+    // The listed paths of the enclosing #list-s, for #items
+    private final Deque<String> listed = new ArrayDeque<>();
+    private final Set<String> visiting = new HashSet<>();
+
+    private TemplateReadSetAnalyzer(Configuration cfg) {
+        this.cfg = cfg;
+        // Like the "cache" directive; they are not in the data-model
+        for (Object name : cfg.getSharedVariableNames()) {
+            locals.add((String) name);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Configuration cfg = FreemarkderDemo.createConfiguration();
+        for (String name : FreemarkderDemo.createTemplateSources().keySet()) {
+            System.out.println(name + ": " + readSetOf(cfg.getTemplate(name)));
+        }
+    }
+
+    /**
+     * The paths the template reads; analyzed at the first call for the template, then stored with it.
+     */
+    public static ReadSet readSetOf(Template template) {
+        ReadSet readSet = (ReadSet) READ_SET.get(template);
+        if (readSet == null) {
+            readSet = analyze(template);
+            READ_SET.set(readSet, template);
+        }
+        return readSet;
+    }
+
+    public static ReadSet analyze(Template template) {
+        if (GET_PARAMETER_COUNT == null || GET_PARAMETER_VALUE == null) {
+            return ReadSet.UNKNOWN;
+        }
+        TemplateReadSetAnalyzer analyzer = new TemplateReadSetAnalyzer(template.getConfiguration());
+        try {
+            analyzer.visitTemplate(template);
+        } catch (IllegalStateException e) {
+            // A node of this FreeMarker version doesn't have the expected fields
+            return ReadSet.UNKNOWN;
+        }
+        return new ReadSet(analyzer.paths);
+    }
+
+    @SuppressWarnings("deprecation") // Template.getRootTreeNode is the only way to the parsed tree
+    private void visitTemplate(Template template) {
+        if (!visiting.add(template.getName())) {
+            return;
+        }
+        collectLocals(template.getRootTreeNode());
+        inScope(new HashMap<>(), () -> visit(template.getRootTreeNode(), template));
+        visiting.remove(template.getName());
+    }
+
+    // The names defined anywhere in the template, which are not read from the data-model
+    @SuppressWarnings("deprecation") // Macro is the only way to the name of a macro
+    private void collectLocals(TreeNode node) {
+        if (node == null) {
+            return;
+        }
+        switch (node.getClass().getSimpleName()) {
+            case "Macro":
+                locals.add(((freemarker.core.Macro) node).getName());
+                break;
+            case "LibraryLoad":
+                locals.add((String) field(node, "targetNsVarName"));
+                break;
+            default:
+                break;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            collectLocals(node.getChildAt(i));
+        }
+    }
+
+    @SuppressWarnings("deprecation") // Macro is the only way to the parameters of a macro
+    private void visit(Object node, Template template) {
+        if (node == null) {
+            return;
+        }
+        if (node instanceof Collection) {
+            for (Object item : (Collection<?>) node) {
+                visit(item, template);
+            }
+            return;
+        }
+        if (!isTemplateObject(node)) {
+            // Loop variable names, flags and such
+            return;
+        }
+        switch (node.getClass().getSimpleName()) {
+            case "Identifier":
+            case "Dot":
+            case "DynamicKeyName":
+                record(path(node, template));
+                return;
+            case "LocalLambdaExpression":
+                Map<String, String> lambdaScope = new HashMap<>();
+                for (Object parameter : (List<?>) field(field(node, "lho"), "parameters")) {
+                    lambdaScope.put((String) field(parameter, "name"), LOCAL);
+                }
+                inScope(lambdaScope, () -> visit(field(node, "rho"), template));
+                return;
+            case "IteratorBlock":
+                visitList(node, template);
+                return;
+            case "Items":
+                String listedPath = listed.isEmpty() ? LOCAL : listed.peek();
+                inScope(loopScope(listedPath, (String) field(node, "loopVarName"), (String) field(node, "loopVar2Name"),
+                        field(node, "loopVar2Name") != null), () -> visitChildren(node, template));
+                return;
+            case "Macro":
+                freemarker.core.Macro macro = (freemarker.core.Macro) node;
+                Map<String, String> macroScope = new HashMap<>();
+                for (String argument : macro.getArgumentNames()) {
+                    macroScope.put(argument, LOCAL);
+                }
+                if (macro.getCatchAll() != null) {
+                    macroScope.put(macro.getCatchAll(), LOCAL);
+                }
+                inScope(macroScope, () -> {
+                    visitParameters(node, template);
+                    visitChildren(node, template);
+                });
+                return;
+            case "UnifiedCall":
+                visitParameters(node, template);
+                Map<String, String> bodyScope = new HashMap<>();
+                List<?> bodyParameterNames = (List<?>) field(node, "bodyParameterNames");
+                if (bodyParameterNames != null) {
+                    for (Object name : bodyParameterNames) {
+                        bodyScope.put((String) name, LOCAL);
+                    }
+                }
+                inScope(bodyScope, () -> visitChildren(node, template));
+                return;
+            case "Include":
+                visitParameters(node, template);
+                String includedName = constantString(field(node, "includedTemplateNameExp"));
+                if (includedName != null) {
+                    visitIncluded(template, includedName);
+                }
+                return;
+            case "Assignment":
+                visitAssignment(node, template);
+                return;
+            case "BlockAssignment":
+                visit(field(node, "namespaceExp"), template);
+                inScope(new HashMap<>(), () -> visitChildren(node, template));
+                if (field(node, "namespaceExp") == null) {
+                    assigned((String) field(node, "varName"));
+                }
+                return;
+            default:
+                visitParameters(node, template);
+                if (UNCONDITIONAL.contains(node.getClass().getSimpleName())) {
+                    visitChildren(node, template);
+                } else {
+                    inScope(new HashMap<>(), () -> visitChildren(node, template));
+                }
+        }
+    }
+
+    // The value is read before the variable is set, so <#assign title = title!"Default"> reads title
+    private void visitAssignment(Object node, Template template) {
+        String name = (String) field(node, "variableName");
+        Object namespace = field(node, "namespaceExp");
+        visit(field(node, "valueExp"), template);
+        visit(namespace, template);
+        if (namespace != null) {
+            // Set in another namespace, it's still read from the data-model here
+            return;
+        }
+        if (!field(node, "operatorType").equals(field(node, "OPERATOR_TYPE_EQUALS"))) {
+            // x += 1, x++: the old value is read too
+            record(lookup(name));
+        }
+        assigned(name);
+    }
+
+    private void assigned(String name) {
+        // A loop variable of the same block hides the assigned one
+        scopes.peek().putIfAbsent(name, LOCAL);
+    }
+
+    private void visitList(Object node, Template template) {
+        String listedPath = path(field(node, "listedExp"), template);
+        record(listedPath);
+        String elementPath = listedPath != null && listedPath != LOCAL ? listedPath + ELEMENT : LOCAL;
+        boolean hashListing = (Boolean) field(node, "hashListing");
+        listed.push(elementPath);
+        try {
+            inScope(loopScope(elementPath, (String) field(node, "loopVar1Name"), (String) field(node, "loopVar2Name"),
+                    hashListing), () -> visitChildren(node, template));
+        } finally {
+            listed.pop();
+        }
+    }
+
+    // In <#list hash as key, value> the key is a local, the value is an element
+    private static Map<String, String> loopScope(String elementPath, String loopVar1, String loopVar2, boolean hashListing) {
+        Map<String, String> scope = new HashMap<>();
+        if (loopVar1 != null) {
+            scope.put(loopVar1, hashListing ? LOCAL : elementPath);
+        }
+        if (loopVar2 != null) {
+            scope.put(loopVar2, elementPath);
+        }
+        return scope;
+    }
+
+    private void visitIncluded(Template template, String includedName) {
+        String name = TemplateNames.resolve(template.getName() != null ? template.getName() : "", includedName);
+        if (name == null) {
+            return;
+        }
+        Template included;
+        try {
+            included = cfg.getTemplate(name, template.getLocale(), null, template.getEncoding(), true, true);
+        } catch (IOException e) {
+            // It fails at render time too, nothing is read from it
+            return;
+        }
+        if (included != null) {
+            visitTemplate(included);
+        }
+    }
+
+    /**
+     * @return the path node reads, LOCAL, or null if node is not a variable path; visits the parts of node that are
+     * not part of the path
+     */
+    private String path(Object node, Template template) {
+        switch (node.getClass().getSimpleName()) {
+            case "Identifier":
+                return lookup((String) field(node, "name"));
+            case "Dot": {
+                String target = path(field(node, "target"), template);
+                if (target == null || target == LOCAL) {
+                    return target;
+                }
+                return target + "." + field(node, "key");
+            }
+            case "DynamicKeyName": {
+                String target = path(field(node, "target"), template);
+                Object keyExpression = field(node, "keyExpression");
+                String key = constantString(keyExpression);
+                if (key == null) {
+                    visit(keyExpression, template);
+                }
+                if (target == null || target == LOCAL) {
+                    return target;
+                }
+                return key != null ? target + "." + key : target + ELEMENT;
+            }
+            default:
+                visit(node, template);
+                return null;
+        }
+    }
+
+    // The path a variable stands for, or LOCAL
+    private String lookup(String name) {
+        for (Map<String, String> scope : scopes) {
+            if (scope.containsKey(name)) {
+                return scope.get(name);
+            }
+        }
+        return locals.contains(name) ? LOCAL : name;
+    }
+
+    private void record(String path) {
+        if (path != null && path != LOCAL) {
+            paths.add(path);
+        }
+    }
+
+    private void visitParameters(Object node, Template template) {
+        int count = (Integer) invoke(GET_PARAMETER_COUNT, node);
+        for (int i = 0; i < count; i++) {
+            visit(invoke(GET_PARAMETER_VALUE, node, i), template);
+        }
+    }
+
+    private void visitChildren(Object node, Template template) {
+        if (node instanceof TreeNode) {
+            TreeNode treeNode = (TreeNode) node;
+            for (int i = 0; i < treeNode.getChildCount(); i++) {
+                visit(treeNode.getChildAt(i), template);
+            }
+        }
+    }
+
+    private void inScope(Map<String, String> scope, Runnable body) {
+        scopes.push(scope);
+        try {
+            body.run();
+        } finally {
+            scopes.pop();
+        }
+    }
+
+    private static boolean isTemplateObject(Object node) {
+        return GET_PARAMETER_COUNT.getDeclaringClass().isInstance(node);
+    }
+
+    // The value of a string literal without interpolations, or null
+    private static String constantString(Object expression) {
+        if (expression == null || !expression.getClass().getSimpleName().equals("StringLiteral")
+                || field(expression, "dynamicValue") != null) {
+            return null;
+        }
+        return (String) field(expression, "value");
+    }
+
+    private static Method findTemplateObjectMethod(String name, Class<?>... parameterTypes) {
+        try {
+            Method method = Class.forName("freemarker.core.TemplateObject").getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+            return method;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Object field(Object object, String name) {
+        Class<?> type = object.getClass();
+        Field field = FIELDS.computeIfAbsent(type.getName() + "#" + name, key -> {
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                try {
+                    Field f = c.getDeclaredField(name);
+                    f.setAccessible(true);
+                    return f;
+                } catch (NoSuchFieldException e) {
+                    // Look in the superclass
+                }
+            }
+            throw new IllegalStateException("Unsupported FreeMarker version, " + type.getName() + " has no " + name);
+        });
+        try {
+            return field.get(object);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The data-model paths read by a template.
+     */
+    public static final class ReadSet {
+
+        // When the template couldn't be analyzed
+        static final ReadSet UNKNOWN = new ReadSet(Collections.emptySet(), false);
+
+        private final Set<String> paths;
+        private final boolean known;
+
+        ReadSet(Set<String> paths) {
+            this(paths, true);
+        }
+
+        private ReadSet(Set<String> paths, boolean known) {
+            this.paths = Collections.unmodifiableSet(new TreeSet<>(paths));
+            this.known = known;
+        }
+
+        /**
+         * @return false if the template couldn't be analyzed (see the class comment): then the paths are empty, and
+         * {@link #isRead} is true for every path
+         */
+        public boolean isKnown() {
+            return known;
+        }
+
+        /**
+         * @return the paths read, sorted; a path read as a whole is listed without its sub-paths only if those are
+         * not read separately
+         */
+        public Set<String> getPaths() {
+            return paths;
+        }
+
+        /**
+         * @return the top-level data-model variables read
+         */
+        public Set<String> getRootVariables() {
+            Set<String> roots = new TreeSet<>();
+            for (String path : paths) {
+                roots.add(path.substring(0, rootEnd(path)));
+            }
+            return roots;
+        }
+
+        /**
+         * Whether the template may need path: it reads path, a path under it, or a path above it (so the whole
+         * value, path included, may be needed, e.g. to pass it to a macro or to list its keys).
+         */
+        public boolean isRead(String path) {
+            if (!known) {
+                return true;
+            }
+            for (String read : paths) {
+                if (read.equals(path) || isUnder(read, path) || isUnder(path, read)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isUnder(String path, String parent) {
+            return path.length() > parent.length() && path.startsWith(parent)
+                    && (path.charAt(parent.length()) == '.' || path.charAt(parent.length()) == '[');
+        }
+
+        private static int rootEnd(String path) {
+            int end = path.length();
+            int dot = path.indexOf('.');
+            int bracket = path.indexOf('[');
+            if (dot >= 0) {
+                end = dot;
+            }
+            if (bracket >= 0 && bracket < end) {
+                end = bracket;
+            }
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return known ? paths.toString() : "unknown";
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.Template;
+import freemarker.template.TemplateModel;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Renders every template for a while before the instance takes traffic, so the first requests after a
+ * deployment don't pay for the parsing, the {@link PreEncodedText}, the ObjectWrapper's class introspection and the
+ * JIT compiling of the render path:
+ * <pre>
+ * TemplateWarmup warmup = FreemarkderDemo.warmUp(cfg);   // or new TemplateWarmup(cfg, names).run()
+ * ...
+ * // In the readiness probe:
+ * return warmup.isReady();
+ * </pre>
+ * The data-models rendered are, by template:
+ * - the recorded ones given with {@link #setCaptures} (see {@link DataModelCodec.CaptureWriter}), in turn. These are
+ *   the best, as they have the real types, so the real bean classes are introspected and the real branches compiled;
+ * - or else a synthetic one built from the {@link TemplateReadSetAnalyzer.ReadSet} of the template: a Map for every
+ *   path, a List of one element for every "[]", and a String at the end of each path. A non-empty Map whose keys are
+ *   all properties of a {@link TemplateBean} class known to the {@link AdapterObjectWrapper} is replaced by such a
+ *   bean (created with its public no-argument constructor, its String properties set), so its generated adapter is
+ *   warmed up too. If several classes fit, the one with the fewest properties the template doesn't read wins. A template that needs other types (a number, a boolean) fails on it; the failures are counted and logged,
+ *   not thrown, as what ran before the failure is warm anyway.
+ *
+ * Each template is rendered for {@link #setTimePerTemplate a time budget} ({@link #DEFAULT_TIME_PER_TEMPLATE_MILLIS}
+ * ms by default), or until it's rendered {@link #setMaxRendersPerTemplate a number of times}, whichever comes first:
+ * a count alone would take seconds on a large template, and be too short for a small one to get compiled.
+ *
+ * The output is encoded like in production ({@link FreemarkderDemo#renderTo}), then thrown away. The
+ * {@link FragmentCacheDirective} shared variables are cleared at the end, so no fragment rendered from a warm-up
+ * data-model is served to a real request.
+ *
+ * {@link #isReady()} only becomes true when {@link #run()} has returned, failures or not; an IOException of the
+ * template loader (a template that can't be parsed, say) fails the warm-up, and the instance never becomes ready.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 20:40
+ */
+public class TemplateWarmup {
+
+    private static final Logger logger = Logger.getLogger(TemplateWarmup.class.getName());
+
+    public static final long DEFAULT_TIME_PER_TEMPLATE_MILLIS = 200;
+
+    /**
+     * Well above what it takes for the hot methods of the render path to be compiled by C2, so the time budget
+     * usually ends first.
+     */
+    public static final int DEFAULT_MAX_RENDERS_PER_TEMPLATE = 10_000;
+
+    // The leaf value of the synthetic data-models
+    private static final String SYNTHETIC_VALUE = "warm-up";
+
+    // An element of a listed value in a read path, see TemplateReadSetAnalyzer
+    private static final String ELEMENT = "[]";
+
+    private final Configuration cfg;
+
+    private final List<String> templateNames;
+
+    private long timePerTemplateNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIME_PER_TEMPLATE_MILLIS);
+
+    private int maxRendersPerTemplate = DEFAULT_MAX_RENDERS_PER_TEMPLATE;
+
+    private final Map<String, List<Object>> recordedDataModels = new HashMap<>();
+
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    /**
+     * @param templateNames all the templates to warm up; a TemplateLoader can't list its templates, so they must be
+     *                      given, like with {@link TemplateSnapshot#getTemplateNames()}
+     */
+    public TemplateWarmup(Configuration cfg, Collection<String> templateNames) {
+        this.cfg = cfg;
+        this.templateNames = new ArrayList<>(templateNames);
+    }
+
+    /**
+     * How long each template is rendered for, at most.
+     */
+    public TemplateWarmup setTimePerTemplate(long time, TimeUnit unit) {
+        if (time < 0) {
+            throw new IllegalArgumentException("time must be at least 0: " + time);
+        }
+        this.timePerTemplateNanos = unit.toNanos(time);
+        return this;
+    }
+
+    /**
+     * How many times each template is rendered, at most.
+     */
+    public TemplateWarmup setMaxRendersPerTemplate(int maxRendersPerTemplate) {
+        if (maxRendersPerTemplate < 0) {
+            throw new IllegalArgumentException("maxRendersPerTemplate must be at least 0: " + maxRendersPerTemplate);
+        }
+        this.maxRendersPerTemplate = maxRendersPerTemplate;
+        return this;
+    }
+
+    /**
+     * Renders these recorded data-models instead of the synthetic ones, for the templates they were recorded for.
+     */
+    public TemplateWarmup setCaptures(Collection<DataModelCodec.Capture> captures) {
+        recordedDataModels.clear();
+        for (DataModelCodec.Capture capture : captures) {
+            recordedDataModels.computeIfAbsent(capture.getTemplateName(), name -> new ArrayList<>())
+                    .add(capture.getDataModel());
+        }
+        return this;
+    }
+
+    /**
+     * Runs the warm-up in the calling thread, then flips {@link #isReady()}.
+     */
+    public Result run() throws IOException {
+        long start = System.nanoTime();
+        WritableByteChannel discard = new RenderReplay.DiscardingChannel();
+        long renders = 0;
+        long failures = 0;
+        for (String name : templateNames) {
+            Template template = cfg.getTemplate(name);
+            List<Object> dataModels = recordedDataModels.get(name);
+            if (dataModels == null) {
+                dataModels = Collections.singletonList(createSyntheticDataModel(template));
+            }
+            Throwable firstFailure = null;
+            long templateStart = System.nanoTime();
+            for (int i = 0; i < maxRendersPerTemplate && System.nanoTime() - templateStart < timePerTemplateNanos; i++) {
+                try {
+                    FreemarkderDemo.renderTo(template, dataModels.get(i % dataModels.size()), discard);
+                } catch (Exception e) {
+                    failures++;
+                    if (firstFailure == null) {
+                        firstFailure = e;
+                    }
+                }
+                renders++;
+            }
+            if (firstFailure != null) {
+                logger.log(Level.WARNING, "Warm-up renders of " + name + " failed", firstFailure);
+            }
+        }
+        clearFragmentCaches();
+
+        Result result = new Result(templateNames.size(), renders, failures, System.nanoTime() - start);
+        ready.countDown();
+        logger.info(result.toString());
+        return result;
+    }
+
+    /**
+     * The readiness signal: true once {@link #run()} has finished.
+     */
+    public boolean isReady() {
+        return ready.getCount() == 0;
+    }
+
+    /**
+     * Waits until {@link #isReady()}, at most timeout.
+     *
+     * @return whether it's ready
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return ready.await(timeout, unit);
+    }
+
+    /**
+     * A data-model with a value for every path the template reads; see the class comment.
+     */
+    static Map<String, Object> createSyntheticDataModel(Template template) {
+        Map<String, Object> root = new LinkedHashMap<>();
+        ObjectWrapper objectWrapper = template.getObjectWrapper();
+        for (String path : TemplateReadSetAnalyzer.readSetOf(template).getPaths()) {
+            List<String> steps = splitPath(path);
+            Object node = root;
+            for (int i = 0; i < steps.size(); i++) {
+                String step = steps.get(i);
+                boolean last = i == steps.size() - 1;
+                boolean nextIsElement = !last && steps.get(i + 1).equals(ELEMENT);
+                if (step.equals(ELEMENT)) {
+                    List<Object> list = cast(node);
+                    if (!last) {
+                        list.set(0, container(list.get(0), nextIsElement));
+                        node = list.get(0);
+                    }
+                } else {
+                    Map<String, Object> hash = cast(node);
+                    if (last) {
+                        hash.putIfAbsent(step, SYNTHETIC_VALUE);
+                    } else {
+                        hash.put(step, container(hash.get(step), nextIsElement));
+                        node = hash.get(step);
+                    }
+                }
+            }
+        }
+        if (objectWrapper instanceof AdapterObjectWrapper) {
+            Set<Class<?>> beanClasses = ((AdapterObjectWrapper) objectWrapper).getAdaptedClasses();
+            root.replaceAll((name, value) -> toBeans(value, beanClasses));
+        }
+        return root;
+    }
+
+    // node, with the Maps that fit a bean class replaced by beans, from the leaves up
+    static Object toBeans(Object node, Set<Class<?>> beanClasses) {
+        if (node instanceof List) {
+            List<Object> list = cast(node);
+            list.replaceAll(element -> toBeans(element, beanClasses));
+            return list;
+        }
+        if (!(node instanceof Map)) {
+            return node;
+        }
+        Map<String, Object> hash = cast(node);
+        hash.replaceAll((key, value) -> toBeans(value, beanClasses));
+        if (hash.isEmpty()) {
+            // Nothing tells which class it would be
+            return hash;
+        }
+        // The class that fits, with the fewest properties left unset; the first by name of those
+        Class<?> bestClass = null;
+        Map<String, PropertyDescriptor> bestProperties = null;
+        for (Class<?> beanClass : beanClasses) {
+            Map<String, PropertyDescriptor> properties = readableProperties(beanClass);
+            if (properties != null && properties.keySet().containsAll(hash.keySet())
+                    && (bestProperties == null || properties.size() < bestProperties.size())) {
+                bestClass = beanClass;
+                bestProperties = properties;
+            }
+        }
+        if (bestClass != null) {
+            Object bean = createBean(bestClass, bestProperties, hash);
+            if (bean != null) {
+                return bean;
+            }
+        }
+        return hash;
+    }
+
+    // The readable properties of beanClass by name, or null if it can't be introspected
+    private static Map<String, PropertyDescriptor> readableProperties(Class<?> beanClass) {
+        try {
+            Map<String, PropertyDescriptor> properties = new HashMap<>();
+            for (PropertyDescriptor property : Introspector.getBeanInfo(beanClass).getPropertyDescriptors()) {
+                if (property.getReadMethod() != null && property.getReadMethod().getDeclaringClass() != Object.class) {
+                    properties.put(property.getName(), property);
+                }
+            }
+            return properties;
+        } catch (IntrospectionException e) {
+            return null;
+        }
+    }
+
+    // A beanClass with the values of hash, or null if it can't be created
+    private static Object createBean(Class<?> beanClass, Map<String, PropertyDescriptor> properties,
+                                     Map<String, Object> hash) {
+        try {
+            Object bean = beanClass.getConstructor().newInstance();
+            for (Map.Entry<String, Object> entry : hash.entrySet()) {
+                Method setter = properties.get(entry.getKey()).getWriteMethod();
+                if (setter != null && setter.getParameterTypes()[0].isInstance(entry.getValue())) {
+                    setter.invoke(bean, entry.getValue());
+                }
+            }
+            return bean;
+        } catch (ReflectiveOperationException e) {
+            // Not one that can be created like this
+            return null;
+        }
+    }
+
+    // "a.b[].c" is [a, b, [], c]
+    static List<String> splitPath(String path) {
+        List<String> steps = new ArrayList<>();
+        int i = 0;
+        while (i < path.length()) {
+            if (path.startsWith(ELEMENT, i)) {
+                steps.add(ELEMENT);
+                i += ELEMENT.length();
+            } else {
+                int end = i;
+                while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                    end++;
+                }
+                steps.add(path.substring(i, end));
+                i = end;
+            }
+            if (i < path.length() && path.charAt(i) == '.') {
+                i++;
+            }
+        }
+        return steps;
+    }
+
+    // existing if it's already the kind of container needed, or else a new one replacing it (a leaf, usually)
+    private static Object container(Object existing, boolean list) {
+        if (list) {
+            if (existing instanceof List) {
+                return existing;
+            }
+            List<Object> elements = new ArrayList<>(1);
+            elements.add(SYNTHETIC_VALUE);
+            return elements;
+        }
+        return existing instanceof Map ? existing : new LinkedHashMap<String, Object>();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object node) {
+        return (T) node;
+    }
+
+    private void clearFragmentCaches() {
+        for (Object name : cfg.getSharedVariableNames()) {
+            TemplateModel variable = cfg.getSharedVariable((String) name);
+            if (variable instanceof FragmentCacheDirective) {
+                ((FragmentCacheDirective) variable).clear();
+            }
+        }
+    }
+
+    /**
+     * What a warm-up did.
+     */
+    public static final class Result {
+
+        private final int templateCount;
+        private final long renderCount;
+        private final long failureCount;
+        private final long elapsedNanos;
+
+        Result(int templateCount, long renderCount, long failureCount, long elapsedNanos) {
+            this.templateCount = templateCount;
+            this.renderCount = renderCount;
+            this.failureCount = failureCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getTemplateCount() {
+            return templateCount;
+        }
+
+        public long getRenderCount() {
+            return renderCount;
+        }
+
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Warmed up %d templates with %d renders (%d failed) in %.1f ms",
+                    templateCount, renderCount, failureCount, elapsedNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.freemarker;
+
+import freemarker.core.ArithmeticEngine;
+import freemarker.core.Configurable;
+import freemarker.core.Environment;
+import freemarker.core.TemplateClassResolver;
+import freemarker.core.TemplateDateFormatFactory;
+import freemarker.core.TemplateNumberFormatFactory;
+import freemarker.core.TruncateBuiltinAlgorithm;
+import freemarker.template.AttemptExceptionReporter;
+import freemarker.template.Configuration;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateExceptionHandler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Gives every tenant its own FreeMarker settings, without a Configuration (and a template cache) per tenant.
+ *
+ * The settings of a tenant are split in two:
+ * - the runtime settings, the ones an Environment has too (number_format, date_format, time_zone, locale, ...), are
+ *   parsed once when the tenant is registered, and their values set on the Environment of each render of the
+ *   tenant, so they don't change how a template is parsed;
+ * - the rest (tag_syntax, whitespace_stripping, output_format, auto_escaping_policy, ...) affect the parsed templates.
+ *   Tenants with the same values of these share one Configuration, created by the {@link ConfigurationFactory} (like
+ *   {@link FreemarkderDemo#createConfiguration()}) with those settings on top; tenants without such settings share
+ *   the base Configuration, the first one created.
+ * So a template is parsed once per distinct set of parse settings (usually once), instead of once per tenant, and
+ * all the tenants render the same Template instance. The exception is the locale: with localized lookup (the default)
+ * the template cache keeps a Template per locale, so the tenants share them by locale. Turn localized_lookup off in
+ * the factory if the templates are not localized by file name, then all locales share one.
+ *
+ * The Configurations are created by the factory rather than cloned from the base, as a clone would share the cache
+ * storage and the template configurations of the base, which belong to the base.
+ *
+ * Render through the {@link Tenant} ({@link Tenant#process}, {@link Tenant#renderTo}), not through
+ * {@link Tenant#getConfiguration()} directly, or the runtime settings of the tenant are not applied. Never change the
+ * settings of the shared Configurations, they are shared with other tenants.
+ *
+ * Shared variables (like the "cache" directive) are shared by the tenants of a Configuration: put the tenant in the
+ * cache keys where the output depends on the tenant's settings.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 20:10
+ */
+public class TenantConfigurationRegistry {
+
+    /**
+     * Creates a Configuration with the settings shared by all the tenants.
+     */
+    @FunctionalInterface
+    public interface ConfigurationFactory {
+        Configuration create() throws IOException;
+    }
+
+    private final ConfigurationFactory configurationFactory;
+
+    private final Configuration base;
+
+    // The settings that an Environment has too, in both naming conventions
+    private final Set<String> runtimeSettingNames;
+
+    // By the parse settings, in a canonical form
+    private final ConcurrentMap<String, Configuration> sharedConfigurations = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+
+    /**
+     * With the Configuration of {@link FreemarkderDemo#createConfiguration()}.
+     */
+    public TenantConfigurationRegistry() throws IOException {
+        this(FreemarkderDemo::createConfiguration);
+    }
+
+    public TenantConfigurationRegistry(ConfigurationFactory configurationFactory) throws IOException {
+        this.configurationFactory = configurationFactory;
+        this.base = configurationFactory.create();
+        Configurable environmentLevel = new Configurable(base);
+        Set<String> names = new HashSet<>(environmentLevel.getSettingNames(false));
+        names.addAll(environmentLevel.getSettingNames(true));
+        this.runtimeSettingNames = Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Registers (or replaces) a tenant. The settings use the names and values of Configuration.setSetting.
+     *
+     * @throws TemplateException        if a setting is unknown or its value is invalid
+     * @throws IOException              if the {@link ConfigurationFactory} fails
+     * @throws IllegalArgumentException for strict_bean_models, that changes the object wrapper, which is shared
+     */
+    public Tenant register(String tenantId, Map<String, String> settings) throws TemplateException, IOException {
+        Map<String, String> runtimeSettings = new LinkedHashMap<>();
+        Map<String, String> parseSettings = new TreeMap<>();
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            if (setting.getKey().equals(Configurable.STRICT_BEAN_MODELS_KEY_SNAKE_CASE)
+                    || setting.getKey().equals(Configurable.STRICT_BEAN_MODELS_KEY_CAMEL_CASE)) {
+                throw new IllegalArgumentException("Tenants can't set " + setting.getKey()
+                        + ", it changes the object wrapper of all the tenants");
+            } else if (runtimeSettingNames.contains(setting.getKey())) {
+                runtimeSettings.put(setting.getKey(), setting.getValue());
+            } else {
+                parseSettings.put(setting.getKey(), setting.getValue());
+            }
+        }
+
+        Configuration cfg = parseSettings.isEmpty() ? base : sharedConfiguration(parseSettings);
+        // Parsed here, once, and fails here on invalid values, instead of at every render
+        Configurable parsed = new Configurable(cfg);
+        for (Map.Entry<String, String> setting : runtimeSettings.entrySet()) {
+            parsed.setSetting(setting.getKey(), setting.getValue());
+        }
+
+        Tenant tenant = new Tenant(tenantId, cfg, runtimeSettings, settersOf(parsed), parsed.getLocale());
+        tenants.put(tenantId, tenant);
+        return tenant;
+    }
+
+    /**
+     * @return the tenant, or null if it's not registered
+     */
+    public Tenant get(String tenantId) {
+        return tenants.get(tenantId);
+    }
+
+    public void unregister(String tenantId) {
+        tenants.remove(tenantId);
+    }
+
+    /**
+     * @return how many Configurations (so template caches) the tenants use, the base included
+     */
+    public int getConfigurationCount() {
+        return sharedConfigurations.size() + 1;
+    }
+
+    private Configuration sharedConfiguration(Map<String, String> parseSettings) throws TemplateException, IOException {
+        // computeIfAbsent, so two tenants registered at once with new settings don't both create a Configuration
+        // (and a template cache); the checked exceptions of the factory and the settings are carried out unchecked
+        try {
+            return sharedConfigurations.computeIfAbsent(parseSettings.toString(), key -> {
+                try {
+                    Configuration cfg = configurationFactory.create();
+                    for (Map.Entry<String, String> setting : parseSettings.entrySet()) {
+                        cfg.setSetting(setting.getKey(), setting.getValue());
+                    }
+                    return cfg;
+                } catch (TemplateException | IOException e) {
+                    throw new CreationFailure(e);
+                }
+            });
+        } catch (CreationFailure e) {
+            if (e.getCause() instanceof TemplateException) {
+                throw (TemplateException) e.getCause();
+            }
+            throw (IOException) e.getCause();
+        }
+    }
+
+    /**
+     * The setters of the settings set on parsed, with their parsed values, to set them on an Environment.
+     */
+    private static List<Consumer<Environment>> settersOf(Configurable parsed) {
+        List<Consumer<Environment>> setters = new ArrayList<>();
+        if (parsed.isLocaleSet()) {
+            Locale locale = parsed.getLocale();
+            setters.add(env -> env.setLocale(locale));
+        }
+        if (parsed.isTimeZoneSet()) {
+            TimeZone timeZone = parsed.getTimeZone();
+            setters.add(env -> env.setTimeZone(timeZone));
+        }
+        if (parsed.isSQLDateAndTimeTimeZoneSet()) {
+            TimeZone timeZone = parsed.getSQLDateAndTimeTimeZone();
+            setters.add(env -> env.setSQLDateAndTimeTimeZone(timeZone));
+        }
+        if (parsed.isNumberFormatSet()) {
+            String format = parsed.getNumberFormat();
+            setters.add(env -> env.setNumberFormat(format));
+        }
+        if (parsed.isCustomNumberFormatsSet()) {
+            Map<String, ? extends TemplateNumberFormatFactory> formats = parsed.getCustomNumberFormats();
+            setters.add(env -> env.setCustomNumberFormats(formats));
+        }
+        if (parsed.isBooleanFormatSet()) {
+            String format = parsed.getBooleanFormat();
+            setters.add(env -> env.setBooleanFormat(format));
+        }
+        if (parsed.isTimeFormatSet()) {
+            String format = parsed.getTimeFormat();
+            setters.add(env -> env.setTimeFormat(format));
+        }
+        if (parsed.isDateFormatSet()) {
+            String format = parsed.getDateFormat();
+            setters.add(env -> env.setDateFormat(format));
+        }
+        if (parsed.isDateTimeFormatSet()) {
+            String format = parsed.getDateTimeFormat();
+            setters.add(env -> env.setDateTimeFormat(format));
+        }
+        if (parsed.isCustomDateFormatsSet()) {
+            Map<String, ? extends TemplateDateFormatFactory> formats = parsed.getCustomDateFormats();
+            setters.add(env -> env.setCustomDateFormats(formats));
+        }
+        if (parsed.isClassicCompatibleSet()) {
+            int classicCompatible = parsed.getClassicCompatibleAsInt();
+            setters.add(env -> env.setClassicCompatibleAsInt(classicCompatible));
+        }
+        if (parsed.isTemplateExceptionHandlerSet()) {
+            TemplateExceptionHandler handler = parsed.getTemplateExceptionHandler();
+            setters.add(env -> env.setTemplateExceptionHandler(handler));
+        }
+        if (parsed.isAttemptExceptionReporterSet()) {
+            AttemptExceptionReporter reporter = parsed.getAttemptExceptionReporter();
+            setters.add(env -> env.setAttemptExceptionReporter(reporter));
+        }
+        if (parsed.isArithmeticEngineSet()) {
+            ArithmeticEngine engine = parsed.getArithmeticEngine();
+            setters.add(env -> env.setArithmeticEngine(engine));
+        }
+        if (parsed.isObjectWrapperSet()) {
+            ObjectWrapper objectWrapper = parsed.getObjectWrapper();
+            setters.add(env -> env.setObjectWrapper(objectWrapper));
+        }
+        if (parsed.isOutputEncodingSet()) {
+            String encoding = parsed.getOutputEncoding();
+            setters.add(env -> env.setOutputEncoding(encoding));
+        }
+        if (parsed.isURLEscapingCharsetSet()) {
+            String charset = parsed.getURLEscapingCharset();
+            setters.add(env -> env.setURLEscapingCharset(charset));
+        }
+        if (parsed.isNewBuiltinClassResolverSet()) {
+            TemplateClassResolver resolver = parsed.getNewBuiltinClassResolver();
+            setters.add(env -> env.setNewBuiltinClassResolver(resolver));
+        }
+        if (parsed.isAutoFlushSet()) {
+            boolean autoFlush = parsed.getAutoFlush();
+            setters.add(env -> env.setAutoFlush(autoFlush));
+        }
+        if (parsed.isShowErrorTipsSet()) {
+            boolean showErrorTips = parsed.getShowErrorTips();
+            setters.add(env -> env.setShowErrorTips(showErrorTips));
+        }
+        if (parsed.isAPIBuiltinEnabledSet()) {
+            boolean apiBuiltinEnabled = parsed.isAPIBuiltinEnabled();
+            setters.add(env -> env.setAPIBuiltinEnabled(apiBuiltinEnabled));
+        }
+        if (parsed.isTruncateBuiltinAlgorithmSet()) {
+            TruncateBuiltinAlgorithm algorithm = parsed.getTruncateBuiltinAlgorithm();
+            setters.add(env -> env.setTruncateBuiltinAlgorithm(algorithm));
+        }
+        if (parsed.isLogTemplateExceptionsSet()) {
+            boolean logTemplateExceptions = parsed.getLogTemplateExceptions();
+            setters.add(env -> env.setLogTemplateExceptions(logTemplateExceptions));
+        }
+        if (parsed.isWrapUncheckedExceptionsSet()) {
+            boolean wrapUncheckedExceptions = parsed.getWrapUncheckedExceptions();
+            setters.add(env -> env.setWrapUncheckedExceptions(wrapUncheckedExceptions));
+        }
+        if (parsed.isLazyImportsSet()) {
+            boolean lazyImports = parsed.getLazyImports();
+            setters.add(env -> env.setLazyImports(lazyImports));
+        }
+        if (parsed.isLazyAutoImportsSet()) {
+            Boolean lazyAutoImports = parsed.getLazyAutoImports();
+            setters.add(env -> env.setLazyAutoImports(lazyAutoImports));
+        }
+        if (parsed.isAutoImportsSet()) {
+            Map<String, String> autoImports = parsed.getAutoImports();
+            setters.add(env -> env.setAutoImports(autoImports));
+        }
+        if (parsed.isAutoIncludesSet()) {
+            List<String> autoIncludes = parsed.getAutoIncludes();
+            setters.add(env -> env.setAutoIncludes(autoIncludes));
+        }
+        return setters;
+    }
+
+    // Carries a checked exception out of computeIfAbsent
+    private static final class CreationFailure extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        CreationFailure(Exception cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * A tenant: its shared Configuration and its runtime settings.
+     */
+    public static final class Tenant {
+
+        private final String id;
+        private final Configuration cfg;
+        private final Map<String, String> runtimeSettings;
+        // The same settings, parsed
+        private final List<Consumer<Environment>> runtimeSetters;
+        private final Locale locale;
+
+        Tenant(String id, Configuration cfg, Map<String, String> runtimeSettings,
+               List<Consumer<Environment>> runtimeSetters, Locale locale) {
+            this.id = id;
+            this.cfg = cfg;
+            this.runtimeSettings = Collections.unmodifiableMap(runtimeSettings);
+            this.runtimeSetters = runtimeSetters;
+            this.locale = locale;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * The Configuration shared with the other tenants with the same parse settings; don't change it.
+         */
+        public Configuration getConfiguration() {
+            return cfg;
+        }
+
+        public Map<String, String> getRuntimeSettings() {
+            return runtimeSettings;
+        }
+
+        /**
+         * Gets the template for the locale of the tenant; without localized lookup, the one shared by all locales.
+         */
+        public Template getTemplate(String name) throws IOException {
+            return cfg.getLocalizedLookup() ? cfg.getTemplate(name, locale) : cfg.getTemplate(name);
+        }
+
+        public void process(String templateName, Object dataModel, Writer out) throws IOException, TemplateException {
+            process(getTemplate(templateName), dataModel, out);
+        }
+
+        /**
+         * Like Template.process, with the runtime settings of the tenant.
+         */
+        public void process(Template template, Object dataModel, Writer out) throws IOException, TemplateException {
+            Environment env = template.createProcessingEnvironment(dataModel, out);
+            for (Consumer<Environment> setter : runtimeSetters) {
+                setter.accept(env);
+            }
+            env.process();
+        }
+
+        /**
+         * Like {@link FreemarkderDemo#renderTo}, with the runtime settings of the tenant.
+         */
+        public void renderTo(String templateName, Object dataModel, WritableByteChannel channel)
+                throws IOException, TemplateException {
+            Template template = getTemplate(templateName);
+            try (Utf8ChannelWriter out = Utf8ChannelWriter.acquire(channel, PreEncodedText.of(template))) {
+                process(template, dataModel, out);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.freemarker;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A Writer that encodes to UTF-8 straight into a ByteBuffer and drains it into a WritableByteChannel.
+ *
+ * An OutputStreamWriter creates a new encoder and new char and byte buffers for every instance, and main used to
+ * create one per render. Instances of this class are pooled instead: {@link #acquire(WritableByteChannel)} takes an
+ * idle writer from a pool shared by all the threads (or creates one if there is none) and attaches it to the given
+ * channel, and {@link #close()} flushes it and gives it back. So after warm-up a render doesn't allocate anything for
+ * the output, the encoder and both buffers are reused. The pool is bounded by {@link #POOL_SIZE}, not by the number
+ * of threads, so it serves virtual threads (one per render, never reused) as well as a fixed pool of platform ones;
+ * with more concurrent renders than that, the writers that don't fit are dropped at close and left to the GC.
+ *
+ * The Buffer casts are there because the build targets Java 8, but may run javac of a later JDK, where flip(), clear()
+ * and position(int) are overridden with covariant return types that don't exist on Java 8.
+ *
+ * When acquired with the {@link PreEncodedText} of the template, the static text blocks of the template are not
+ * encoded, their bytes are copied into the byte buffer as they are.
+ *
+ * close() doesn't close the channel; like with the Writer passed to Template.process, closing the underlying sink
+ * is the caller's business. A writer must not be used after close(), as it may already serve another render.
+ *
+ * The channel must be blocking: a channel that accepts no bytes of a write (a non-blocking socket whose send buffer is
+ * full) fails the write with an IOException rather than being retried in a busy loop.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 11:45
+ */
+public final class Utf8ChannelWriter extends Writer {
+
+    static final int CHAR_BUFFER_SIZE = 2048;
+
+    // Enough for any CHAR_BUFFER_SIZE chars, as UTF-8 needs at most 3 bytes per UTF-16 char
+    static final int BYTE_BUFFER_SIZE = CHAR_BUFFER_SIZE * 3;
+
+    // About 10 KB each; twice the CPU count, as the renders that run at once are at most about that many
+    static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final BlockingQueue<Utf8ChannelWriter> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+    private final ByteBuffer bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+
+    private WritableByteChannel channel;
+
+    private PreEncodedText preEncodedText;
+
+    private Utf8ChannelWriter() {
+    }
+
+    /**
+     * Returns an idle writer of the pool, or a new one if there is none, attached to channel.
+     */
+    public static Utf8ChannelWriter acquire(WritableByteChannel channel) {
+        return acquire(channel, null);
+    }
+
+    /**
+     * Like {@link #acquire(WritableByteChannel)}, but the text blocks found in preEncodedText (may be null) are written
+     * as their pre-encoded bytes.
+     */
+    public static Utf8ChannelWriter acquire(WritableByteChannel channel, PreEncodedText preEncodedText) {
+        Utf8ChannelWriter writer = POOL.poll();
+        if (writer == null) {
+            writer = new Utf8ChannelWriter();
+        }
+        writer.channel = channel;
+        writer.preEncodedText = preEncodedText;
+        return writer;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (preEncodedText != null && off == 0 && len == cbuf.length) {
+            byte[] utf8 = preEncodedText.get(cbuf);
+            if (utf8 != null) {
+                writeEncoded(utf8, 0, utf8.length);
+                return;
+            }
+        }
+        while (len > 0) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int n = Math.min(len, chars.remaining());
+            chars.put(cbuf, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int n = Math.min(len, chars.remaining());
+            // Copies right into the backing array, without the temporary char[] of Writer.write(String)
+            str.getChars(off, off + n, chars.array(), chars.arrayOffset() + chars.position());
+            ((Buffer) chars).position(chars.position() + n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes bytes that are already UTF-8 encoded, after the chars written so far, so output that was encoded once
+     * (like a cached fragment) isn't encoded again on every render.
+     */
+    public void writeEncoded(byte[] utf8, int off, int len) throws IOException {
+        encode(false);
+        while (len > 0) {
+            if (!bytes.hasRemaining()) {
+                drain();
+            }
+            int n = Math.min(len, bytes.remaining());
+            bytes.put(utf8, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Sends everything written so far to the channel, and flushes the channel too if it's Flushable
+     * (like {@link ChunkedOutputChannel}). A dangling high surrogate stays buffered until its pair arrives.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        encode(false);
+        drain();
+        if (channel instanceof Flushable) {
+            ((Flushable) channel).flush();
+        }
+    }
+
+    /**
+     * Flushes, then detaches the writer from the channel and gives it back to the pool. The channel is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            encode(true);
+            drain();
+        } finally {
+            channel = null;
+            preEncodedText = null;
+            ((Buffer) chars).clear();
+            ((Buffer) bytes).clear();
+            encoder.reset();
+            // Dropped if the pool is full
+            POOL.offer(this);
+        }
+    }
+
+    private void encode(boolean endOfInput) throws IOException {
+        ensureOpen();
+        ((Buffer) chars).flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else if (endOfInput) {
+                while (encoder.flush(bytes).isOverflow()) {
+                    drain();
+                }
+                break;
+            } else {
+                break;
+            }
+        }
+        chars.compact();
+    }
+
+    private void drain() throws IOException {
+        ((Buffer) bytes).flip();
+        while (bytes.hasRemaining()) {
+            if (channel.write(bytes) == 0) {
+                int unsent = bytes.remaining();
+                // Lost anyway, so close() doesn't fail again on them
+                ((Buffer) bytes).clear();
+                throw new IOException("The channel accepted none of " + unsent
+                        + " bytes, it must be a blocking channel: " + channel);
+            }
+        }
+        ((Buffer) bytes).clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel == null) {
+            throw new IOException("Writer is closed");
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.freemarker;
+
+import freemarker.cache.TemplateLoader;
+import freemarker.template.Configuration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A TemplateLoader for a directory (like cfg.setDirectoryForTemplateLoading), that learns about changes from a
+ * WatchService instead of asking the file system.
+ *
+ * With the FileTemplateLoader, once the template update delay has passed, every getTemplate costs a few file system
+ * calls (one existence check per localized name tried, then the last modification time). Here the watcher thread
+ * keeps an in-memory index of the template files and a version number per file, so findTemplateSource and
+ * getLastModified never touch the disk; only reading a template that actually changed does. As the checks are cheap,
+ * {@link #install(Configuration)} sets the update delay to 0, so a change is picked up by the very next getTemplate.
+ *
+ * When a template changes, the templates that #include or #import it (directly or through others) get a new version
+ * too, so they are re-parsed together with it. The dependencies are found by scanning the sources as they are loaded,
+ * so only literal template names are followed.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 14:30
+ */
+public class WatchingTemplateLoader implements TemplateLoader, Closeable {
+
+    private static final Logger logger = Logger.getLogger(WatchingTemplateLoader.class.getName());
+
+    private static final Pattern DEPENDENCY = Pattern.compile("[<\\[]#(?:include|import)\\s+[\"']([^\"']+)[\"']");
+
+    private final Path baseDir;
+
+    private final WatchService watchService;
+
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+
+    // Template name (relative to baseDir, with '/' separators) -> version
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    // Template name -> the names of the templates that include or import it
+    private final Map<String, Set<String>> dependents = new ConcurrentHashMap<>();
+
+    private final AtomicLong versionCounter = new AtomicLong();
+
+    private final Thread watcher;
+
+    public WatchingTemplateLoader(Path baseDir) throws IOException {
+        this.baseDir = baseDir.toAbsolutePath().normalize();
+        if (!Files.isDirectory(this.baseDir)) {
+            throw new IOException("Not a directory: " + this.baseDir);
+        }
+        this.watchService = FileSystems.getDefault().newWatchService();
+        registerTree(this.baseDir);
+        this.watcher = new Thread(this::watch, "template-watcher-" + this.baseDir.getFileName());
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    /**
+     * Sets this as the template loader of cfg, and turns off the update delay, as staleness checks don't touch
+     * the file system anymore.
+     */
+    public void install(Configuration cfg) {
+        cfg.setTemplateLoader(this);
+        cfg.setTemplateUpdateDelayMilliseconds(0);
+    }
+
+    @Override
+    public Object findTemplateSource(String name) {
+        return versions.containsKey(name) ? new Source(name) : null;
+    }
+
+    @Override
+    public long getLastModified(Object templateSource) {
+        Long version = versions.get(((Source) templateSource).name);
+        return version != null ? version : -1;
+    }
+
+    @Override
+    public Reader getReader(Object templateSource, String encoding) throws IOException {
+        String name = ((Source) templateSource).name;
+        String text = new String(Files.readAllBytes(baseDir.resolve(name)), Charset.forName(encoding));
+        recordDependencies(name, text);
+        return new StringReader(text);
+    }
+
+    @Override
+    public void closeTemplateSource(Object templateSource) {
+    }
+
+    /**
+     * Stops watching. The loader keeps serving the templates it knows about, but won't see changes anymore.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        watcher.interrupt();
+    }
+
+    @Override
+    public String toString() {
+        return "WatchingTemplateLoader(" + baseDir + ")";
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path dir = watchedDirs.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                        // Lost events, look at everything again
+                        versions.keySet().removeIf(name -> !Files.isRegularFile(baseDir.resolve(name)));
+                        registerTree(baseDir);
+                        changed(new HashSet<>(versions.keySet()));
+                        continue;
+                    }
+                    Path file = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file)) {
+                        registerTree(file);
+                    } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        // A file, or a directory with all the templates under it
+                        String name = nameOf(file);
+                        Set<String> removed = new HashSet<>();
+                        versions.keySet().removeIf(indexed -> (indexed.equals(name) || indexed.startsWith(name + "/"))
+                                && removed.add(indexed));
+                        if (!removed.isEmpty()) {
+                            changed(removed);
+                        }
+                    } else if (Files.isRegularFile(file)) {
+                        String name = nameOf(file);
+                        versions.putIfAbsent(name, 0L);
+                        changed(Collections.singleton(name));
+                    }
+                }
+                if (!key.reset()) {
+                    watchedDirs.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Template watcher stopped, changes in " + baseDir + " won't be seen anymore", e);
+        }
+    }
+
+    /**
+     * Gives a new version to the changed templates and to everything that depends on them.
+     */
+    private void changed(Set<String> names) {
+        ArrayDeque<String> queue = new ArrayDeque<>(names);
+        Set<String> seen = new HashSet<>(names);
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            versions.computeIfPresent(name, (n, version) -> versionCounter.incrementAndGet());
+            for (String dependent : dependents.getOrDefault(name, Collections.emptySet())) {
+                if (seen.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+    }
+
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirs.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                versions.putIfAbsent(nameOf(file), versionCounter.incrementAndGet());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void recordDependencies(String name, String text) {
+        Matcher matcher = DEPENDENCY.matcher(text);
+        while (matcher.find()) {
+            String dependency = TemplateNames.resolve(name, matcher.group(1));
+            if (dependency != null) {
+                dependents.computeIfAbsent(dependency, d -> ConcurrentHashMap.newKeySet()).add(name);
+            }
+        }
+    }
+
+    private String nameOf(Path file) {
+        return baseDir.relativize(file.toAbsolutePath().normalize()).toString().replace(file.getFileSystem().getSeparator(), "/");
+    }
+
+    private static final class Source {
+
+        final String name;
+
+        Source(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Source && ((Source) o).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
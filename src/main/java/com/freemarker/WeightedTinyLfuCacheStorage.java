@@ -0,0 +1,622 @@
+package com.freemarker;
+
+import freemarker.cache.CacheStorageWithGetSize;
+import freemarker.cache.ConcurrentCacheStorage;
+import freemarker.template.Template;
+
+import javax.swing.tree.TreeNode;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A template cache storage bounded by the estimated memory of the cached templates, using the W-TinyLFU policy.
+ * Install it with Configuration.setCacheStorage.
+ *
+ * The Configuration's default storage (MruCacheStorage with soft references) can only be bounded by the number of
+ * templates, and leaves the rest to the GC. This one keeps at most maximumWeight (estimated) bytes of parsed templates,
+ * and decides what to keep by how often the templates are asked for:
+ * - new templates enter a small LRU window (1% of the weight);
+ * - when they fall out of the window, they have to win against the LRU victim of the main area, by having been
+ *   asked for more often recently, as counted by a {@link FrequencySketch};
+ * - the main area is a segmented LRU: probation for the admitted entries, protected (80%) for the ones hit again.
+ * So a burst of one-off templates can't flush the templates used all the time, which a plain LRU would do.
+ *
+ * The weight of a template is given by the {@link Weigher}; by default it's {@link #estimateSize(Template)}.
+ * Cached "template not found" results and parse errors weigh {@link #NON_TEMPLATE_WEIGHT}.
+ *
+ * Reads don't lock: the entries are in a ConcurrentHashMap, and a get only records the key in a small lossy ring
+ * buffer. The frequency sketch and the LRU queues are updated from that buffer later, under the lock, by the next put
+ * or by the get that finds the buffer filling up (if the lock is free; a get never waits for it). So many threads can
+ * look up templates at once, which is what TemplateCache does on every getTemplate, and only the loads take turns.
+ * When the buffer fills faster than it's drained, the oldest reads are dropped; they only inform the eviction policy.
+ *
+ * {@link #getStats()} returns the hit, miss, eviction and load time counters. Loads are detected as a put that
+ * follows a miss of the same key on the same thread, which is how TemplateCache loads a missing template.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 13:40
+ */
+public class WeightedTinyLfuCacheStorage implements ConcurrentCacheStorage, CacheStorageWithGetSize {
+
+    public static final long NON_TEMPLATE_WEIGHT = 64;
+
+    /**
+     * Estimates how many bytes of heap a parsed template retains.
+     */
+    @FunctionalInterface
+    public interface Weigher {
+        long weigh(Template template);
+    }
+
+    // TemplateCache stores its private CachedTemplate objects, the Template is in their templateOrException field
+    private static final Field TEMPLATE_OR_EXCEPTION = findTemplateOrExceptionField();
+
+    // The source lines a Template keeps for the error messages, read when it's parsed
+    private static final Field SOURCE_LINES = findSourceLinesField();
+
+    // What an AST node retains, about, when the size has to be estimated from the node count
+    private static final long NODE_WEIGHT = 64;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    // The keys of the reads not applied to the policy yet; a power of 2
+    private static final int READ_BUFFER_SIZE = 128;
+
+    // A get drains the read buffer (if the lock is free) once this many reads are pending
+    private static final int READ_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 4;
+
+    private final long maximumWeight;
+    private final long maximumWindowWeight;
+    private final long maximumProtectedWeight;
+    private final Weigher weigher;
+
+    private final Map<Object, Node> nodes = new ConcurrentHashMap<>();
+    private final Queue window = new Queue();
+    private final Queue probation = new Queue();
+    private final Queue protectedQueue = new Queue();
+    private final FrequencySketch sketch;
+
+    // Guards the queues, the sketch and the counters but the hits and misses
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicReferenceArray<Object> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong readsWritten = new AtomicLong();
+    private volatile long readsDrained;
+
+    private final ThreadLocal<Miss> lastMiss = new ThreadLocal<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    private long weightedSize;
+    private long evictionCount;
+    private long evictionWeight;
+    private long loadCount;
+    private long totalLoadTime;
+
+    /**
+     * @param maximumWeight   the maximum total weight, in (estimated) bytes
+     * @param expectedEntries roughly how many templates will be cached, sizes the frequency sketch
+     */
+    public WeightedTinyLfuCacheStorage(long maximumWeight, int expectedEntries) {
+        this(maximumWeight, expectedEntries, WeightedTinyLfuCacheStorage::estimateSize);
+    }
+
+    public WeightedTinyLfuCacheStorage(long maximumWeight, int expectedEntries, Weigher weigher) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximumWeight must be positive, but was " + maximumWeight);
+        }
+        this.maximumWeight = maximumWeight;
+        this.maximumWindowWeight = Math.max(1, maximumWeight / 100);
+        this.maximumProtectedWeight = (maximumWeight - maximumWindowWeight) * 8 / 10;
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    /**
+     * The default {@link Weigher}: about 6 bytes per character of the template source. That's the source lines the
+     * Template keeps for error messages (2 bytes per char), the char[]-s of the static text (2 bytes per char), and
+     * the AST nodes, which we count as another 2 bytes per char. It's an estimate, measure your own templates with a
+     * heap dump, and pass a tuned Weigher if they differ much.
+     *
+     * The length of the source is added up from the lines the Template kept when it was parsed, so nothing is
+     * rendered or copied (Template.toString() would print the whole tree again). With a FreeMarker version that
+     * doesn't keep them, it's 64 bytes per node of the tree instead.
+     */
+    @SuppressWarnings("deprecation") // Template.getRootTreeNode is the only way to the parsed tree
+    public static long estimateSize(Template template) {
+        if (SOURCE_LINES != null) {
+            try {
+                long length = 0;
+                for (Object line : (List<?>) SOURCE_LINES.get(template)) {
+                    length += ((CharSequence) line).length() + 1;
+                }
+                return 256 + 6L * length;
+            } catch (IllegalAccessException | RuntimeException e) {
+                // Count the nodes instead
+            }
+        }
+        return 256 + NODE_WEIGHT * countNodes(template.getRootTreeNode());
+    }
+
+    private static long countNodes(TreeNode node) {
+        if (node == null) {
+            return 0;
+        }
+        long count = 1;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            count += countNodes(node.getChildAt(i));
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Node node = nodes.get(key);
+        long pending = recordRead(key);
+        if (pending >= READ_DRAIN_THRESHOLD && lock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (node == null) {
+            missCount.increment();
+            lastMiss.set(new Miss(key, System.nanoTime()));
+            return null;
+        }
+        hitCount.increment();
+        return node.value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        lock.lock();
+        try {
+            drainReads();
+            doPut(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void doPut(Object key, Object value) {
+        Miss miss = lastMiss.get();
+        if (miss != null) {
+            lastMiss.remove();
+            if (miss.key.equals(key)) {
+                loadCount++;
+                totalLoadTime += System.nanoTime() - miss.startTime;
+            }
+        }
+
+        Object templateOrException = templateOrExceptionOf(value);
+        Node node = nodes.get(key);
+        if (node != null) {
+            // TemplateCache puts the entry again after checking if it's stale, usually with the same Template,
+            // which we don't weigh again
+            long weight = templateOrException == node.templateOrException ? node.weight : weigh(templateOrException);
+            weightedSize += weight - node.weight;
+            queueOf(node).weight += weight - node.weight;
+            node.value = value;
+            node.templateOrException = templateOrException;
+            node.weight = weight;
+            onHit(node);
+        } else {
+            node = new Node(key, value, templateOrException, weigh(templateOrException));
+            nodes.put(key, node);
+            weightedSize += node.weight;
+            window.addLast(node, WINDOW);
+        }
+        evict();
+    }
+
+    @Override
+    public void remove(Object key) {
+        lock.lock();
+        try {
+            Node node = nodes.remove(key);
+            if (node != null) {
+                queueOf(node).remove(node);
+                weightedSize -= node.weight;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            nodes.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            weightedSize = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return nodes.size();
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            return new Stats(hitCount.sum(), missCount.sum(), evictionCount, evictionWeight, loadCount,
+                    totalLoadTime, nodes.size(), weightedSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns how many reads are pending
+    private long recordRead(Object key) {
+        long index = readsWritten.getAndIncrement();
+        readBuffer.lazySet((int) index & (READ_BUFFER_SIZE - 1), key);
+        return index + 1 - readsDrained;
+    }
+
+    // Applies the buffered reads to the sketch and the queues; under the lock
+    private void drainReads() {
+        long end = readsWritten.get();
+        for (long i = Math.max(readsDrained, end - READ_BUFFER_SIZE); i < end; i++) {
+            Object key = readBuffer.getAndSet((int) i & (READ_BUFFER_SIZE - 1), null);
+            if (key != null) {
+                sketch.increment(key);
+                Node node = nodes.get(key);
+                if (node != null) {
+                    onHit(node);
+                }
+            }
+        }
+        readsDrained = end;
+    }
+
+    private void onHit(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                protectedQueue.addLast(node, PROTECTED);
+                while (protectedQueue.weight > maximumProtectedWeight && protectedQueue.first != node) {
+                    Node demoted = protectedQueue.first;
+                    protectedQueue.remove(demoted);
+                    probation.addLast(demoted, PROBATION);
+                }
+                break;
+            default:
+                protectedQueue.moveToLast(node);
+        }
+    }
+
+    private void evict() {
+        // Entries falling out of the window become candidates for the main area
+        Node candidate = null;
+        while (window.weight > maximumWindowWeight && window.first != null) {
+            Node node = window.first;
+            window.remove(node);
+            probation.addLast(node, PROBATION);
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+
+        while (weightedSize > maximumWeight) {
+            Node victim = probation.first != null ? probation.first
+                    : protectedQueue.first != null ? protectedQueue.first
+                    : window.first;
+            if (victim == null) {
+                return;
+            }
+            if (candidate != null && candidate != victim && candidate.queue == PROBATION) {
+                // TinyLFU admission: the candidate only stays if it's asked for more often than the victim
+                if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                    evict(victim);
+                } else {
+                    Node next = candidate.next;
+                    evict(candidate);
+                    candidate = next;
+                }
+            } else {
+                evict(victim);
+            }
+        }
+    }
+
+    private void evict(Node node) {
+        nodes.remove(node.key);
+        queueOf(node).remove(node);
+        weightedSize -= node.weight;
+        evictionCount++;
+        evictionWeight += node.weight;
+    }
+
+    private Queue queueOf(Node node) {
+        return node.queue == WINDOW ? window : node.queue == PROBATION ? probation : protectedQueue;
+    }
+
+    private static Object templateOrExceptionOf(Object value) {
+        if (TEMPLATE_OR_EXCEPTION != null && TEMPLATE_OR_EXCEPTION.getDeclaringClass().isInstance(value)) {
+            try {
+                return TEMPLATE_OR_EXCEPTION.get(value);
+            } catch (IllegalAccessException e) {
+                // Can't happen, the field was made accessible
+            }
+        }
+        return null;
+    }
+
+    private long weigh(Object templateOrException) {
+        return templateOrException instanceof Template
+                ? Math.max(1, weigher.weigh((Template) templateOrException))
+                : NON_TEMPLATE_WEIGHT;
+    }
+
+    private static Field findSourceLinesField() {
+        try {
+            Field field = Template.class.getDeclaredField("lines");
+            if (!List.class.isAssignableFrom(field.getType())) {
+                return null;
+            }
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Field findTemplateOrExceptionField() {
+        try {
+            Field field = Class.forName("freemarker.cache.TemplateCache$CachedTemplate").getDeclaredField("templateOrException");
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Some other FreeMarker version, every entry will weigh NON_TEMPLATE_WEIGHT
+            return null;
+        }
+    }
+
+    public static final class Stats {
+
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final long evictionWeight;
+        private final long loadCount;
+        private final long totalLoadTime;
+        private final int size;
+        private final long weightedSize;
+
+        Stats(long hitCount, long missCount, long evictionCount, long evictionWeight, long loadCount,
+              long totalLoadTime, int size, long weightedSize) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.evictionWeight = evictionWeight;
+            this.loadCount = loadCount;
+            this.totalLoadTime = totalLoadTime;
+            this.size = size;
+            this.weightedSize = weightedSize;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public double getHitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        public long getEvictionWeight() {
+            return evictionWeight;
+        }
+
+        public long getLoadCount() {
+            return loadCount;
+        }
+
+        /**
+         * @return the total time spent loading (finding, reading and parsing) templates, in nanoseconds
+         */
+        public long getTotalLoadTime() {
+            return totalLoadTime;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getWeightedSize() {
+            return weightedSize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d, misses=%d, hitRate=%.3f, evictions=%d (%d bytes), loads=%d (%.3f ms), size=%d (%d bytes)",
+                    hitCount, missCount, getHitRate(), evictionCount, evictionWeight, loadCount, totalLoadTime / 1e6,
+                    size, weightedSize);
+        }
+    }
+
+    private static final class Miss {
+
+        final Object key;
+        final long startTime;
+
+        Miss(Object key, long startTime) {
+            this.key = key;
+            this.startTime = startTime;
+        }
+    }
+
+    private static final class Node {
+
+        final Object key;
+        // Read without the lock
+        volatile Object value;
+        Object templateOrException;
+        long weight;
+        int queue;
+        Node prev;
+        Node next;
+
+        Node(Object key, Object value, Object templateOrException, long weight) {
+            this.key = key;
+            this.value = value;
+            this.templateOrException = templateOrException;
+            this.weight = weight;
+        }
+    }
+
+    // A doubly linked list of nodes, least recently used first
+    private static final class Queue {
+
+        Node first;
+        Node last;
+        long weight;
+
+        void addLast(Node node, int queue) {
+            node.queue = queue;
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+            weight += node.weight;
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToLast(Node node) {
+            if (node != last) {
+                remove(node);
+                addLast(node, node.queue);
+            }
+        }
+
+        void clear() {
+            first = null;
+            last = null;
+            weight = 0;
+        }
+    }
+
+    /**
+     * A count-min sketch of 4 rows of 4-bit counters, to estimate how often a key was asked for.
+     * When the number of increments reaches 10 times the width, all counters are halved, so old popularity fades.
+     */
+    static final class FrequencySketch {
+
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x97cb3127, 0x0ba1d8e5, 0x4ea3e2a1, 0x7e3f1b35};
+
+        private final byte[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(64, expectedEntries - 1) << 1);
+            table = new byte[DEPTH][width];
+            mask = width - 1;
+            sampleSize = 10 * width;
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int index = indexOf(hash, i);
+                if (table[i][index] < MAX_COUNT) {
+                    table[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, table[i][indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private void reset() {
+            for (byte[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = (byte) (row[i] >>> 1);
+                }
+            }
+            additions /= 2;
+        }
+
+        private int indexOf(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private static int spread(int hash) {
+            hash ^= hash >>> 17;
+            hash *= 0xed5ad4bb;
+            hash ^= hash >>> 11;
+            return hash;
+        }
+    }
+}
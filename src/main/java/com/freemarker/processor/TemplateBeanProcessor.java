@@ -0,0 +1,236 @@
+package com.freemarker.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Generates a TemplateHashModel adapter for every class annotated with {@link com.freemarker.TemplateBean}.
+ *
+ * For a bean com.example.Product with the properties url and name it generates com.example.ProductTemplateModel,
+ * which looks the property up with a switch on the key and calls the getter directly, and its nested Factory,
+ * which is listed in META-INF/services/com.freemarker.BeanAdapterFactory.
+ *
+ * The processor is compiled in its own pass before the rest of the sources (see the maven-compiler-plugin
+ * executions in pom.xml), and is named to javac there (-processor) rather than listed in
+ * META-INF/services/javax.annotation.processing.Processor, which would run it in every build with this jar on the
+ * classpath.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 12:20
+ */
+@SupportedAnnotationTypes(TemplateBeanProcessor.TEMPLATE_BEAN)
+public class TemplateBeanProcessor extends AbstractProcessor {
+
+    static final String TEMPLATE_BEAN = "com.freemarker.TemplateBean";
+
+    static final String FACTORY_SERVICE = "META-INF/services/com.freemarker.BeanAdapterFactory";
+
+    static final String ADAPTER_SUFFIX = "TemplateModel";
+
+    private final Set<String> factories = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+
+        TypeElement templateBean = processingEnv.getElementUtils().getTypeElement(TEMPLATE_BEAN);
+        if (templateBean == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(templateBean)) {
+            if (element.getKind() != ElementKind.CLASS || !element.getModifiers().contains(Modifier.PUBLIC)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "@TemplateBean must be put on a public class", element);
+                continue;
+            }
+            TypeElement bean = (TypeElement) element;
+            try {
+                writeAdapter(bean, findProperties(bean));
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Couldn't write the TemplateModel adapter: " + e, element);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The JavaBeans properties with a public getter, by property name.
+     */
+    private Map<String, String> findProperties(TypeElement bean) {
+        Map<String, String> properties = new TreeMap<>();
+        List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(bean));
+        for (ExecutableElement method : methods) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)
+                    || !method.getParameters().isEmpty() || method.getReturnType().getKind() == TypeKind.VOID) {
+                continue;
+            }
+            String methodName = method.getSimpleName().toString();
+            String propertyName;
+            if (methodName.startsWith("get") && methodName.length() > 3 && !methodName.equals("getClass")) {
+                propertyName = decapitalize(methodName.substring(3));
+            } else if (methodName.startsWith("is") && methodName.length() > 2
+                    && method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+                propertyName = decapitalize(methodName.substring(2));
+            } else {
+                continue;
+            }
+            properties.putIfAbsent(propertyName, methodName);
+        }
+        return properties;
+    }
+
+    private void writeAdapter(TypeElement bean, Map<String, String> properties) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(bean);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String beanName = bean.getQualifiedName().toString();
+        String adapterSimpleName = bean.getSimpleName() + ADAPTER_SUFFIX;
+        String adapterName = packageName.isEmpty() ? adapterSimpleName : packageName + "." + adapterSimpleName;
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(adapterName, bean);
+        try (PrintWriter out = new PrintWriter(file.openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Generated by " + TemplateBeanProcessor.class.getName() + " from {@link " + beanName + "}, don't edit.");
+            out.println(" */");
+            out.println("public final class " + adapterSimpleName + " extends freemarker.template.WrappingTemplateModel");
+            out.println("        implements freemarker.template.TemplateHashModelEx, freemarker.template.AdapterTemplateModel,");
+            out.println("        freemarker.ext.util.WrapperTemplateModel {");
+            out.println();
+            out.println("    private static final java.util.List<String> KEYS = java.util.Collections.unmodifiableList(java.util.Arrays.asList(");
+            List<String> quoted = new ArrayList<>();
+            for (String property : properties.keySet()) {
+                quoted.add("\"" + property + "\"");
+            }
+            out.println("            " + String.join(", ", quoted) + "));");
+            out.println();
+            out.println("    private final " + beanName + " bean;");
+            out.println();
+            out.println("    " + adapterSimpleName + "(" + beanName + " bean, freemarker.template.ObjectWrapper objectWrapper) {");
+            out.println("        super(objectWrapper);");
+            out.println("        this.bean = bean;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public freemarker.template.TemplateModel get(String key) throws freemarker.template.TemplateModelException {");
+            out.println("        switch (key) {");
+            for (Map.Entry<String, String> property : properties.entrySet()) {
+                out.println("            case \"" + property.getKey() + "\":");
+                out.println("                return wrap(bean." + property.getValue() + "());");
+            }
+            out.println("            default:");
+            out.println("                return null;");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public boolean isEmpty() {");
+            out.println("        return KEYS.isEmpty();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public int size() {");
+            out.println("        return KEYS.size();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public freemarker.template.TemplateCollectionModel keys() {");
+            out.println("        return new freemarker.template.SimpleCollection(KEYS, getObjectWrapper());");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public freemarker.template.TemplateCollectionModel values() throws freemarker.template.TemplateModelException {");
+            out.println("        java.util.List<freemarker.template.TemplateModel> values = new java.util.ArrayList<>(KEYS.size());");
+            out.println("        for (String key : KEYS) {");
+            out.println("            values.add(get(key));");
+            out.println("        }");
+            out.println("        return new freemarker.template.SimpleCollection(values, getObjectWrapper());");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Object getAdaptedObject(Class<?> hint) {");
+            out.println("        return bean;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Object getWrappedObject() {");
+            out.println("        return bean;");
+            out.println("    }");
+            out.println();
+            out.println("    public static final class Factory implements com.freemarker.BeanAdapterFactory<" + beanName + "> {");
+            out.println();
+            out.println("        @Override");
+            out.println("        public Class<" + beanName + "> getBeanClass() {");
+            out.println("            return " + beanName + ".class;");
+            out.println("        }");
+            out.println();
+            out.println("        @Override");
+            out.println("        public freemarker.template.TemplateModel adapt(" + beanName + " bean, freemarker.template.ObjectWrapper objectWrapper) {");
+            out.println("            return new " + adapterSimpleName + "(bean, objectWrapper);");
+            out.println("        }");
+            out.println("    }");
+            out.println("}");
+        }
+        factories.add(adapterName + "$Factory");
+    }
+
+    private void writeServiceFile() {
+        if (factories.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", FACTORY_SERVICE);
+            try (Writer out = file.openWriter()) {
+                for (String factory : factories) {
+                    out.write(factory);
+                    out.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Couldn't write " + FACTORY_SERVICE + ": " + e);
+        }
+    }
+
+    // Same rules as java.beans.Introspector.decapitalize, "URL" stays "URL", "Url" becomes "url"
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+}
@@ -0,0 +1,141 @@
+package com.freemarker;
+
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The renders are queued on a {@link StepExecutor}, so the tests see when a render was started.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+public class AsyncRendererTests {
+
+    @Test
+    void renderedAfterStagesComplete() throws Exception {
+        StepExecutor executor = new StepExecutor();
+        CompletableFuture<String> user = new CompletableFuture<>();
+        CompletableFuture<List<String>> items = new CompletableFuture<>();
+        Map<String, Object> dataModel = new LinkedHashMap<>();
+        dataModel.put("user", user);
+        dataModel.put("items", items);
+        dataModel.put("site", "example.com");
+
+        CompletableFuture<String> render = new AsyncRenderer(executor).renderToString(
+                TemplateFixtures.template("${user} ${items?join(',')} ${site}"), dataModel).toCompletableFuture();
+        user.complete("Joe");
+        assertEquals(0, executor.runAll());
+        assertFalse(render.isDone());
+
+        items.complete(Arrays.asList("a", "b"));
+        assertFalse(render.isDone());
+        assertEquals(1, executor.runAll());
+        assertEquals("Joe a,b example.com", render.get());
+    }
+
+    @Test
+    void failedStageNotRendered() throws Exception {
+        StepExecutor executor = new StepExecutor();
+        CompletableFuture<String> user = new CompletableFuture<>();
+        CompletableFuture<String> other = new CompletableFuture<>();
+        Map<String, Object> dataModel = new LinkedHashMap<>();
+        dataModel.put("user", user);
+        dataModel.put("other", other);
+
+        CompletableFuture<String> render = new AsyncRenderer(executor).renderToString(
+                TemplateFixtures.template("${user} ${other}"), dataModel).toCompletableFuture();
+        IOException failure = new IOException("User service is down");
+        user.completeExceptionally(failure);
+        other.complete("x");
+
+        assertTrue(render.isCompletedExceptionally());
+        assertEquals(0, executor.runAll());
+        assertSame(failure, assertThrows(ExecutionException.class, render::get).getCause());
+    }
+
+    @Test
+    void renderFailurePropagated() throws Exception {
+        StepExecutor executor = new StepExecutor();
+        Template template = TemplateFixtures.template("${missing}");
+        AsyncRenderer renderer = new AsyncRenderer(executor);
+
+        List<CompletableFuture<?>> renders = new ArrayList<>();
+        renders.add(renderer.renderToString(template, Collections.emptyMap()).toCompletableFuture());
+        renders.add(renderer.process(template, Collections.emptyMap(), new StringWriter()).toCompletableFuture());
+        renders.add(renderer.renderTo(template, Collections.emptyMap(), Channels.newChannel(new ByteArrayOutputStream()))
+                .toCompletableFuture());
+        assertEquals(3, executor.runAll());
+        for (CompletableFuture<?> render : renders) {
+            assertInstanceOf(TemplateException.class, assertThrows(ExecutionException.class, render::get).getCause());
+        }
+    }
+
+    @Test
+    void processAndRenderTo() throws Exception {
+        StepExecutor executor = new StepExecutor();
+        Template template = TemplateFixtures.template("中${x}");
+        AsyncRenderer renderer = new AsyncRenderer(executor);
+        Map<String, Object> dataModel = Collections.singletonMap("x", CompletableFuture.completedFuture(1));
+
+        StringWriter writer = new StringWriter();
+        CompletableFuture<Void> processed = renderer.process(template, dataModel, writer).toCompletableFuture();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompletableFuture<Void> rendered = renderer.renderTo(template, dataModel, Channels.newChannel(bytes))
+                .toCompletableFuture();
+        assertEquals(2, executor.runAll());
+
+        processed.get();
+        rendered.get();
+        assertEquals("中1", writer.toString());
+        assertEquals("中1", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Queues the tasks, and runs them on the test thread when asked to.
+     */
+    private static final class StepExecutor implements Executor {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        /**
+         * @return how many tasks were run
+         */
+        int runAll() {
+            List<Runnable> queued;
+            synchronized (this) {
+                queued = new ArrayList<>(tasks);
+                tasks.clear();
+            }
+            queued.forEach(Runnable::run);
+            return queued.size();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateExceptionHandler;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+public class BatchRendererTests {
+
+    private static final int WINDOW = 4;
+
+    private static final int COUNT = 20;
+
+    @Test
+    void orderedWithinWindow() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WINDOW);
+        try {
+            // The first document is only finished after the last one of the window, yet consumed first
+            Gate gate = new Gate(0, WINDOW - 1);
+            DataModels dataModels = new DataModels(COUNT, gate);
+            List<String> documents = new ArrayList<>();
+
+            long count = new BatchRenderer(executor, WINDOW).render(template("${gate.pass(n)}${n}"), dataModels,
+                    BatchRenderer.Order.ORDERED, (dataModel, document) -> {
+                        assertEquals(dataModel.get("n").toString(), document);
+                        assertTrue(dataModels.pulled - documents.size() <= WINDOW, "Pulled " + dataModels.pulled);
+                        documents.add(document);
+                    });
+
+            assertEquals(COUNT, count);
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < COUNT; i++) {
+                expected.add(Integer.toString(i));
+            }
+            assertEquals(expected, documents);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void unorderedWithinWindow() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WINDOW);
+        try {
+            Gate gate = new Gate(0, WINDOW - 1);
+            DataModels dataModels = new DataModels(COUNT, gate);
+            List<String> documents = new ArrayList<>();
+
+            long count = new BatchRenderer(executor, WINDOW).render(template("${gate.pass(n)}${n}"), dataModels,
+                    BatchRenderer.Order.UNORDERED, (dataModel, document) -> {
+                        assertTrue(dataModels.pulled - documents.size() <= WINDOW, "Pulled " + dataModels.pulled);
+                        documents.add(document);
+                    });
+
+            assertEquals(COUNT, count);
+            assertEquals(COUNT, documents.size());
+            // Done before the first one
+            assertTrue(documents.indexOf("0") > documents.indexOf(Integer.toString(WINDOW - 1)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void renderErrorRethrown() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WINDOW);
+        try {
+            BatchRenderer renderer = new BatchRenderer(executor, WINDOW);
+            Template template = template("${10 / (n - 5)}");
+            for (BatchRenderer.Order order : BatchRenderer.Order.values()) {
+                DataModels dataModels = new DataModels(COUNT, null);
+                assertThrows(TemplateException.class,
+                        () -> renderer.render(template, dataModels, order, (dataModel, document) -> {
+                        }), order.name());
+                if (order == BatchRenderer.Order.ORDERED) {
+                    // Stopped at the failed one, with only its window pulled after it
+                    assertTrue(dataModels.pulled <= 5 + WINDOW, "Pulled " + dataModels.pulled);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void sinkErrorRethrown() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WINDOW);
+        try {
+            BatchRenderer renderer = new BatchRenderer(executor, WINDOW);
+            IOException failure = new IOException("Sink is full");
+            for (BatchRenderer.Order order : BatchRenderer.Order.values()) {
+                IOException thrown = assertThrows(IOException.class, () -> renderer.render(template("${n}"),
+                        new DataModels(COUNT, null), order, (dataModel, document) -> {
+                            throw failure;
+                        }), order.name());
+                assertSame(failure, thrown);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void windowAtLeastOne() {
+        assertThrows(IllegalArgumentException.class, () -> new BatchRenderer(Executors.newSingleThreadExecutor(), 0));
+    }
+
+    private static Template template(String source) throws IOException {
+        Configuration cfg = TemplateFixtures.configuration("t.ftl", source);
+        cfg.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+        return cfg.getTemplate("t.ftl");
+    }
+
+    /**
+     * Data-models with an n from 0, counting how many were pulled.
+     */
+    private static final class DataModels implements Iterator<Map<String, Object>> {
+
+        private final int count;
+
+        private final Gate gate;
+
+        volatile int pulled;
+
+        DataModels(int count, Gate gate) {
+            this.count = count;
+            this.gate = gate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pulled < count;
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            Map<String, Object> dataModel = new HashMap<>();
+            dataModel.put("n", pulled++);
+            dataModel.put("gate", gate);
+            return dataModel;
+        }
+    }
+
+    /**
+     * Holds back one render until another one has run.
+     */
+    public static final class Gate {
+
+        private final int waiting;
+
+        private final int opening;
+
+        private final CountDownLatch open = new CountDownLatch(1);
+
+        Gate(int waiting, int opening) {
+            this.waiting = waiting;
+            this.opening = opening;
+        }
+
+        public String pass(int n) throws InterruptedException {
+            if (n == opening) {
+                open.countDown();
+            } else if (n == waiting && !open.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Never opened");
+            }
+            return "";
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import freemarker.template.TemplateException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+public class ChunkedOutputChannelTests {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+
+    @Test
+    void httpChunkFraming() throws IOException {
+        RecordingStream sink = new RecordingStream();
+        ChunkedOutputChannel channel = new ChunkedOutputChannel(sink, 26, ChunkedOutputChannel.FlushPolicy.END_ONLY,
+                0, true);
+        write(channel, ALPHABET + ALPHABET + "tail");
+        channel.close();
+
+        assertEquals("1a\r\n" + ALPHABET + "\r\n"
+                + "1a\r\n" + ALPHABET + "\r\n"
+                + "4\r\ntail\r\n"
+                + "0\r\n\r\n", sink.text());
+        assertEquals(56, channel.getBytesWritten());
+    }
+
+    @Test
+    void multiDigitChunkSize() throws IOException {
+        RecordingStream sink = new RecordingStream();
+        ChunkedOutputChannel channel = new ChunkedOutputChannel(sink, 0x10000, ChunkedOutputChannel.FlushPolicy.END_ONLY,
+                0, true);
+        char[] body = new char[0x1234];
+        Arrays.fill(body, 'x');
+        write(channel, new String(body));
+        channel.close();
+
+        assertEquals("1234\r\n" + new String(body) + "\r\n0\r\n\r\n", sink.text());
+    }
+
+    @Test
+    void unframed() throws IOException {
+        RecordingStream sink = new RecordingStream();
+        ChunkedOutputChannel channel = new ChunkedOutputChannel(sink, 10, ChunkedOutputChannel.FlushPolicy.END_ONLY,
+                0, false);
+        write(channel, ALPHABET);
+        // Only the full chunks so far
+        assertEquals(ALPHABET.substring(0, 20), sink.text());
+        channel.close();
+
+        assertEquals(ALPHABET, sink.text());
+        assertEquals(Collections.singletonList(26), sink.flushedAt);
+    }
+
+    @Test
+    void flushAfterBytes() throws IOException {
+        RecordingStream sink = new RecordingStream();
+        ChunkedOutputChannel channel = new ChunkedOutputChannel(sink, 8, ChunkedOutputChannel.FlushPolicy.AFTER_BYTES,
+                10, false);
+        write(channel, ALPHABET.substring(0, 7));
+        write(channel, ALPHABET.substring(7, 25));
+        channel.flush();
+        channel.close();
+
+        assertEquals(ALPHABET.substring(0, 25), sink.text());
+        assertEquals(Arrays.asList(10, 20, 25), sink.flushedAt);
+        assertEquals(3, channel.getFlushCount());
+    }
+
+    @Test
+    void flushOnFlushDirective() throws IOException, TemplateException {
+        Configuration cfg = FreemarkderDemo.createConfiguration(TemplateFixtures.loader(
+                "page.ftlh", "<head></head><#flush><body>${x}</body>"));
+        RecordingStream sink = new RecordingStream();
+
+        try (ChunkedOutputChannel channel = new ChunkedOutputChannel(sink)) {
+            FreemarkderDemo.renderTo(cfg.getTemplate("page.ftlh"), Collections.singletonMap("x", "body"), channel);
+        }
+
+        assertEquals("<head></head><body>body</body>", sink.text());
+        // The <#flush>, and the end of the render
+        assertEquals(Arrays.asList(13, 30), sink.flushedAt);
+    }
+
+    @Test
+    void closedChannel() throws IOException {
+        ChunkedOutputChannel channel = new ChunkedOutputChannel(new RecordingStream());
+        channel.close();
+        channel.close();
+
+        assertThrows(ClosedChannelException.class, () -> write(channel, "x"));
+        assertThrows(ClosedChannelException.class, channel::flush);
+    }
+
+    private static void write(ChunkedOutputChannel channel, String text) throws IOException {
+        ByteBuffer src = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        assertEquals(src.remaining(), channel.write(src));
+        assertEquals(0, src.remaining());
+    }
+
+    /**
+     * Remembers how many bytes it had at each flush.
+     */
+    private static final class RecordingStream extends ByteArrayOutputStream {
+
+        final List<Integer> flushedAt = new ArrayList<>();
+
+        @Override
+        public void flush() {
+            flushedAt.add(size());
+        }
+
+        String text() {
+            return new String(toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.freemarker;
+
+import freemarker.template.SimpleScalar;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 21:10
+ */
+public class DataModelCodecTests {
+
+    @Test
+    void valuesKeepTheirTypes() throws IOException {
+        java.sql.Timestamp timestamp = new java.sql.Timestamp(1_000_000L);
+        timestamp.setNanos(123_456_789);
+        Map<String, Object> model = new LinkedHashMap<>();
+        model.put("null", null);
+        model.put("string", "héllo ✓");
+        model.put("char", 'c');
+        model.put("true", true);
+        model.put("false", false);
+        model.put("int", -42);
+        model.put("long", Long.MIN_VALUE);
+        model.put("short", (short) 7);
+        model.put("byte", (byte) -1);
+        model.put("double", 0.1);
+        model.put("float", 1.5f);
+        model.put("bigInteger", new BigInteger("123456789012345678901234567890"));
+        model.put("bigDecimal", new BigDecimal("-1234.5678"));
+        model.put("date", new Date(1_000_000L));
+        model.put("sqlDate", new java.sql.Date(1_000_000L));
+        model.put("sqlTime", new java.sql.Time(1_000_000L));
+        model.put("sqlTimestamp", timestamp);
+        model.put("enum", TimeUnit.SECONDS);
+        model.put("list", Arrays.asList(1, "two", null));
+        model.put("nested", Collections.singletonMap("key", Collections.singletonMap("deeper", "value")));
+
+        Map<?, ?> decoded = (Map<?, ?>) roundTrip(model);
+        assertEquals(model.keySet().toString(), decoded.keySet().toString(), "the order of the keys");
+        model.put("char", "c");
+        for (Map.Entry<String, Object> entry : model.entrySet()) {
+            Object value = decoded.get(entry.getKey());
+            assertEquals(entry.getValue(), value, entry.getKey());
+            // Lists and maps are read as ArrayList and LinkedHashMap
+            if (entry.getValue() != null && !(entry.getValue() instanceof Collection)
+                    && !(entry.getValue() instanceof Map)) {
+                assertEquals(entry.getValue().getClass(), value.getClass(), entry.getKey());
+            }
+        }
+    }
+
+    @Test
+    void arraysAndOtherNumbers() throws IOException {
+        assertEquals(Arrays.asList(1, 2, 3), roundTrip(new int[]{1, 2, 3}));
+        assertEquals(Arrays.asList("a", "b"), roundTrip(new String[]{"a", "b"}));
+        assertEquals(new BigDecimal(Long.MAX_VALUE), roundTrip(new AtomicLong(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void beans() throws IOException {
+        Product product = (Product) roundTrip(FreemarkderDemo.createDataModel().get("latestProduct"));
+        assertEquals("products/greenmouse.html", product.getUrl());
+        assertEquals("green mouse", product.getName());
+
+        Map<String, Object> readOnly = new HashMap<>();
+        readOnly.put("name", "fixed");
+        assertEquals(readOnly, DataModelCodec.read(new ByteArrayInputStream(encode(new ReadOnlyBean())),
+                Collections.singleton(ReadOnlyBean.class)));
+    }
+
+    @Test
+    void demoTemplateRendersTheSame() throws IOException, TemplateException {
+        Template template = FreemarkderDemo.createConfiguration().getTemplate("test.ftlh");
+        Map<String, Object> model = FreemarkderDemo.createDataModel();
+        assertEquals(TemplateFixtures.render(template, model), TemplateFixtures.render(template, roundTrip(model)));
+    }
+
+    @Test
+    void captures() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataModelCodec.CaptureWriter writer = new DataModelCodec.CaptureWriter(bytes)) {
+            writer.capture("a.ftl", Collections.singletonMap("x", 1));
+            writer.capture("b.ftl", Collections.singletonMap("x", "x"));
+            writer.capture("a.ftl", null);
+        }
+
+        List<DataModelCodec.Capture> captures =
+                DataModelCodec.readCaptures(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(3, captures.size());
+        assertEquals("a.ftl", captures.get(0).getTemplateName());
+        assertEquals(Collections.singletonMap("x", 1), captures.get(0).getDataModel());
+        assertEquals("b.ftl", captures.get(1).getTemplateName());
+        assertEquals(Collections.singletonMap("x", "x"), captures.get(1).getDataModel());
+        assertEquals("a.ftl", captures.get(2).getTemplateName());
+        assertNull(captures.get(2).getDataModel());
+    }
+
+    @Test
+    void repeatedStrings() throws IOException {
+        String key = "a rather long property name";
+        List<Map<String, Integer>> rows = Arrays.asList(
+                Collections.singletonMap(key, 1), Collections.singletonMap(key, 2), Collections.singletonMap(key, 3));
+        assertEquals(1, count(encode(rows), key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void invalidValuesAndInput() {
+        Map<String, Object> cycle = new HashMap<>();
+        cycle.put("self", cycle);
+        assertThrows(IOException.class, () -> encode(cycle));
+        assertThrows(IOException.class, () -> encode(new SimpleScalar("x")));
+        assertThrows(IOException.class, () -> DataModelCodec.read(new ByteArrayInputStream(new byte[]{99})));
+        assertThrows(IOException.class,
+                () -> DataModelCodec.readCaptures(new ByteArrayInputStream(new byte[]{0, 0, 0, 0, 0, 0, 0, 1})));
+    }
+
+    @Test
+    void onlyAllowedBeanClassesAreCreated() throws IOException {
+        RecordingBean bean = new RecordingBean();
+        bean.setName("x");
+        byte[] encoded = encode(bean);
+        RecordingBean.setterCalls.set(0);
+
+        assertEquals(Collections.singletonMap("name", "x"), DataModelCodec.read(new ByteArrayInputStream(encoded)));
+        assertEquals(0, RecordingBean.setterCalls.get());
+
+        Object allowed = DataModelCodec.read(new ByteArrayInputStream(encoded),
+                Collections.singleton(RecordingBean.class));
+        assertEquals("x", ((RecordingBean) allowed).getName());
+        assertEquals(1, RecordingBean.setterCalls.get());
+    }
+
+    @Test
+    void templateBeanClassesAreAllowedByDefault() {
+        assertTrue(DataModelCodec.templateBeanClasses().contains(Product.class));
+    }
+
+    @Test
+    void lengthsOutOfRange() {
+        // STRING, then the varints of -1 and of MAX_LENGTH + 1
+        assertThrows(IOException.class, () -> DataModelCodec.read(new ByteArrayInputStream(
+                new byte[]{1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F})));
+        assertThrows(IOException.class, () -> DataModelCodec.read(new ByteArrayInputStream(
+                new byte[]{1, (byte) 0x81, (byte) 0x80, (byte) 0x80, 0x20})));
+        // LIST of 1000 values, then the end of the input
+        assertThrows(IOException.class, () -> DataModelCodec.read(new ByteArrayInputStream(
+                new byte[]{18, (byte) 0xE8, 0x07})));
+        // STRING_REF -1
+        assertThrows(IOException.class, () -> DataModelCodec.read(new ByteArrayInputStream(
+                new byte[]{2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F})));
+    }
+
+    /**
+     * Counts the calls of its setter, which must not happen unless the class is allowed.
+     */
+    public static class RecordingBean {
+
+        static final AtomicInteger setterCalls = new AtomicInteger();
+
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            setterCalls.incrementAndGet();
+            this.name = name;
+        }
+    }
+
+    /**
+     * Has a property without a setter, so it can't be restored.
+     */
+    public static class ReadOnlyBean {
+
+        public String getName() {
+            return "fixed";
+        }
+    }
+
+    private static byte[] encode(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataModelCodec.write(value, bytes);
+        return bytes.toByteArray();
+    }
+
+    private static Object roundTrip(Object value) throws IOException {
+        byte[] encoded = encode(value);
+        Object decoded = DataModelCodec.read(new ByteArrayInputStream(encoded));
+        // Encodes the same again
+        assertArrayEquals(encoded, encode(decoded));
+        return decoded;
+    }
+
+    private static int count(byte[] bytes, byte[] part) {
+        int count = 0;
+        for (int i = 0; i + part.length <= bytes.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + part.length), part)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,92 @@
+package com.freemarker;
+
+import freemarker.core.HTMLOutputFormat;
+import freemarker.core.TemplateHTMLOutputModel;
+import freemarker.template.Configuration;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * The output must be the one of the stock HTMLOutputFormat.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+public class FastHtmlOutputFormatTests {
+
+    private static final List<String> TEXTS = Arrays.asList(
+            "",
+            "plain text",
+            "<>&\"'",
+            "<at the start",
+            "at the end>",
+            "'both'",
+            "a < b && c > d",
+            // All at 64 or above, none escaped
+            "@ABCZ[\\]^_`az{|}~\u007f é中",
+            "😀<😀>\ud83d",
+            "\ude00&\ud83d");
+
+    @Test
+    void sameAsStockFormat() throws Exception {
+        for (String text : TEXTS) {
+            assertSameEscaping(text);
+        }
+    }
+
+    @Test
+    void sameAsStockFormatForEveryChar() throws Exception {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            assertSameEscaping("x" + (char) c + "y");
+        }
+    }
+
+    @Test
+    void nothingToEscape() {
+        String text = "nothing to escape here";
+        assertSame(text, FastHtmlOutputFormat.INSTANCE.escapePlainText(text));
+        assertSame(text, FastHtmlOutputFormat.escape(text));
+    }
+
+    @Test
+    void stockMarkupInTheDataModel() throws Exception {
+        Configuration cfg = FreemarkderDemo.createConfiguration(TemplateFixtures.loader(
+                "t.ftlh", "${markup} ${escaped} ${text} ${markup?markup_string}"));
+        Map<String, Object> dataModel = new HashMap<>();
+        dataModel.put("markup", HTMLOutputFormat.INSTANCE.fromMarkup("<b>bold</b>"));
+        dataModel.put("escaped", HTMLOutputFormat.INSTANCE.fromPlainTextByEscaping("a < b"));
+        dataModel.put("text", "<i>");
+
+        assertEquals("<b>bold</b> a &lt; b &lt;i&gt; &lt;b&gt;bold&lt;/b&gt;",
+                TemplateFixtures.render(cfg, "t.ftlh", dataModel));
+
+        TemplateModel wrapped = cfg.getObjectWrapper().wrap(HTMLOutputFormat.INSTANCE.fromMarkup("<br>"));
+        TemplateHTMLOutputModel converted = assertInstanceOf(TemplateHTMLOutputModel.class, wrapped);
+        assertSame(FastHtmlOutputFormat.INSTANCE, converted.getOutputFormat());
+        assertEquals("<br>", FastHtmlOutputFormat.INSTANCE.getMarkupString(converted));
+    }
+
+    private static void assertSameEscaping(String text) throws Exception {
+        assertEquals(HTMLOutputFormat.INSTANCE.escapePlainText(text),
+                FastHtmlOutputFormat.INSTANCE.escapePlainText(text), text);
+        assertEquals(output(HTMLOutputFormat.INSTANCE, text), output(FastHtmlOutputFormat.INSTANCE, text), text);
+    }
+
+    private static String output(HTMLOutputFormat format, String text) throws IOException, TemplateModelException {
+        StringWriter out = new StringWriter();
+        format.output(text, out);
+        return out.toString();
+    }
+}
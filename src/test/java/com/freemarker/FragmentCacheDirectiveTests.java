@@ -0,0 +1,151 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The ttl is measured with a clock the tests move, instead of real time.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+public class FragmentCacheDirectiveTests {
+
+    @Test
+    void hitWithinTtl() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        FragmentCacheDirective cache = new FragmentCacheDirective(1024, clock::get);
+        Configuration cfg = configuration(cache, "t.ftl", "<@cache key=\"k\" ttl=10>${n}</@cache>|${n}");
+
+        assertEquals("1|1", render(cfg, "t.ftl", Locale.US, 1));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10) - 1);
+        assertEquals("1|2", render(cfg, "t.ftl", Locale.US, 2));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void expiredAfterTtl() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        FragmentCacheDirective cache = new FragmentCacheDirective(1024, clock::get);
+        Configuration cfg = configuration(cache, "t.ftl", "<@cache key=\"k\" ttl=10>${n}</@cache>");
+
+        assertEquals("1", render(cfg, "t.ftl", Locale.US, 1));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals("2", render(cfg, "t.ftl", Locale.US, 2));
+        assertEquals("2", render(cfg, "t.ftl", Locale.US, 3));
+        assertEquals(1, cache.getSize());
+
+        // The default ttl
+        cfg = configuration(cache, "t.ftl", "<@cache key=\"default\">${n}</@cache>");
+        assertEquals("4", render(cfg, "t.ftl", Locale.US, 4));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(FragmentCacheDirective.DEFAULT_TTL_SECONDS) - 1);
+        assertEquals("4", render(cfg, "t.ftl", Locale.US, 5));
+        clock.incrementAndGet();
+        assertEquals("6", render(cfg, "t.ftl", Locale.US, 6));
+    }
+
+    @Test
+    void keyedByTemplateAndLocale() throws Exception {
+        FragmentCacheDirective cache = new FragmentCacheDirective(1024);
+        Configuration cfg = configuration(cache,
+                "a.ftl", "<@cache key=\"k\">a${n}</@cache>",
+                "b.ftl", "<@cache key=\"k\">b${n}</@cache>");
+
+        assertEquals("a1", render(cfg, "a.ftl", Locale.US, 1));
+        assertEquals("b2", render(cfg, "b.ftl", Locale.US, 2));
+        assertEquals("a3", render(cfg, "a.ftl", Locale.GERMANY, 3));
+        assertEquals("a1", render(cfg, "a.ftl", Locale.US, 4));
+        assertEquals("b2", render(cfg, "b.ftl", Locale.US, 5));
+        assertEquals("a3", render(cfg, "a.ftl", Locale.GERMANY, 6));
+        assertEquals(3, cache.getSize());
+
+        cache.invalidate("a.ftl", Locale.US, "k");
+        assertEquals("a7", render(cfg, "a.ftl", Locale.US, 7));
+        assertEquals("a3", render(cfg, "a.ftl", Locale.GERMANY, 8));
+    }
+
+    @Test
+    void leastRecentlyUsedEvicted() throws Exception {
+        // "x1" weighs 2 * 2 chars + 2 bytes, so two of them fit
+        FragmentCacheDirective cache = new FragmentCacheDirective(12);
+        Configuration cfg = configuration(cache, "t.ftl", "<@cache key=k>x${n}</@cache>");
+
+        assertEquals("x1", renderKey(cfg, "a", 1));
+        assertEquals("x2", renderKey(cfg, "b", 2));
+        assertEquals("x1", renderKey(cfg, "a", 3));
+        assertEquals("x4", renderKey(cfg, "c", 4));
+        assertEquals(2, cache.getSize());
+        assertEquals(12, cache.getWeightedSize());
+        assertEquals("x1", renderKey(cfg, "a", 5));
+        assertEquals("x6", renderKey(cfg, "b", 6));
+    }
+
+    @Test
+    void hitWrittenToChannel() throws Exception {
+        FragmentCacheDirective cache = new FragmentCacheDirective(1024);
+        Configuration cfg = configuration(cache, "t.ftl", "<@cache key=\"k\">中${n}</@cache>");
+        Template template = cfg.getTemplate("t.ftl");
+
+        for (int n = 1; n <= 2; n++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            FreemarkderDemo.renderTo(template, Collections.singletonMap("n", n), Channels.newChannel(out));
+            assertEquals("中1", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    void invalidParameters() {
+        FragmentCacheDirective cache = new FragmentCacheDirective(1024);
+        Configuration cfg = configuration(cache,
+                "noKey.ftl", "<@cache>x</@cache>",
+                "badTtl.ftl", "<@cache key=\"k\" ttl=0>x</@cache>",
+                "other.ftl", "<@cache key=\"k\" other=1>x</@cache>");
+
+        for (String name : new String[]{"noKey.ftl", "badTtl.ftl", "other.ftl"}) {
+            assertThrows(TemplateException.class, () -> render(cfg, name, Locale.US, 1), name);
+        }
+        assertEquals(0, cache.getSize());
+    }
+
+    private static Configuration configuration(FragmentCacheDirective cache, String... namesAndSources) {
+        Configuration cfg = TemplateFixtures.configuration(namesAndSources);
+        cfg.setSharedVariable("cache", cache);
+        return cfg;
+    }
+
+    private static String render(Configuration cfg, String name, Locale locale, int n)
+            throws IOException, TemplateException {
+        StringWriter out = new StringWriter();
+        cfg.getTemplate(name, locale).process(Collections.singletonMap("n", n), out);
+        return out.toString();
+    }
+
+    private static String renderKey(Configuration cfg, String key, int n) throws IOException, TemplateException {
+        Template template = cfg.getTemplate("t.ftl");
+        StringWriter out = new StringWriter();
+        Map<String, Object> dataModel = new HashMap<>();
+        dataModel.put("k", key);
+        dataModel.put("n", n);
+        template.process(dataModel, out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+public class LazyDataModelTests {
+
+    @Test
+    void builtOnceOnFirstRead() throws Exception {
+        AtomicInteger userBuilds = new AtomicInteger();
+        AtomicInteger unusedBuilds = new AtomicInteger();
+        LazyDataModel.Definition definition = LazyDataModel.builder()
+                .put("user", () -> "Joe #" + userBuilds.incrementAndGet())
+                .put("unused", unusedBuilds::incrementAndGet)
+                .build();
+        Template template = TemplateFixtures.template("${user} ${user}");
+
+        LazyDataModel model = definition.newModel(template.getObjectWrapper());
+        assertFalse(model.isResolved("user"));
+        assertEquals(0, userBuilds.get());
+
+        assertEquals("Joe #1 Joe #1", TemplateFixtures.render(template, model));
+        assertEquals(1, userBuilds.get());
+        assertTrue(model.isResolved("user"));
+        assertFalse(model.isResolved("unused"));
+        assertEquals(0, unusedBuilds.get());
+
+        // Built again for the next render
+        assertEquals("Joe #2 Joe #2", TemplateFixtures.render(template, definition.newModel(template.getObjectWrapper())));
+    }
+
+    @Test
+    void nullBuiltOnce() throws Exception {
+        AtomicInteger builds = new AtomicInteger();
+        LazyDataModel.Definition definition = LazyDataModel.builder()
+                .put("missing", () -> {
+                    builds.incrementAndGet();
+                    return null;
+                })
+                .build();
+        Configuration cfg = TemplateFixtures.configuration("t.ftl", "${missing!'a'} ${missing!'b'} ${other!'c'}");
+
+        assertEquals("a b c", TemplateFixtures.render(cfg, "t.ftl", definition.newModel(cfg.getObjectWrapper())));
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    void builderCopied() {
+        LazyDataModel.Builder builder = LazyDataModel.builder();
+        LazyDataModel.Definition empty = builder.build();
+        builder.put("x", () -> 1);
+
+        assertTrue(empty.newModel(TemplateFixtures.configuration().getObjectWrapper()).isEmpty());
+        assertFalse(builder.build().newModel(TemplateFixtures.configuration().getObjectWrapper()).isEmpty());
+    }
+}
@@ -0,0 +1,116 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+public class MappedTemplateLoaderTests {
+
+    @Test
+    void packRoundTrip(@TempDir Path dir) throws Exception {
+        Path templates = Files.createDirectories(dir.resolve("templates"));
+        write(templates.resolve("page.ftl"), "<#include \"parts/header.ftl\">${x}", 1000);
+        write(templates.resolve("parts/header.ftl"), "Café 中文 😀 ", 3000);
+        write(templates.resolve("empty.ftl"), "", 2000);
+        Path pack = dir.resolve("templates.pack");
+        MappedTemplateLoader.pack(templates, StandardCharsets.UTF_8, pack);
+
+        try (MappedTemplateLoader loader = new MappedTemplateLoader(pack)) {
+            assertEquals(3, loader.getTemplateCount());
+            assertNull(loader.findTemplateSource("missing.ftl"));
+            assertEquals(3000, loader.getLastModified(loader.findTemplateSource("page.ftl")));
+
+            Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
+            cfg.setLocalizedLookup(false);
+            cfg.setTemplateLoader(loader);
+            assertEquals("Café 中文 😀 1", TemplateFixtures.render(cfg, "page.ftl", Collections.singletonMap("x", 1)));
+            assertEquals("", TemplateFixtures.render(cfg, "empty.ftl", Collections.emptyMap()));
+        }
+    }
+
+    @Test
+    void sourceEncoding(@TempDir Path dir) throws Exception {
+        Path templates = Files.createDirectories(dir.resolve("templates"));
+        Files.write(templates.resolve("t.ftl"), "Café".getBytes(StandardCharsets.ISO_8859_1));
+        Path pack = dir.resolve("templates.pack");
+        MappedTemplateLoader.pack(templates, StandardCharsets.ISO_8859_1, pack);
+
+        try (MappedTemplateLoader loader = new MappedTemplateLoader(pack)) {
+            Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
+            cfg.setLocalizedLookup(false);
+            cfg.setTemplateLoader(loader);
+            // Stored as UTF-8, whatever the encoding the template is read with
+            cfg.setDefaultEncoding("ISO-8859-1");
+            assertEquals("Café", TemplateFixtures.render(cfg, "t.ftl", Collections.emptyMap()));
+        }
+    }
+
+    @Test
+    void corruptPacks(@TempDir Path dir) throws Exception {
+        assertCorrupt(dir, "Not a template pack", pack(0, TemplateSnapshot.VERSION, 0));
+        assertCorrupt(dir, "Unsupported template pack version: 99", pack(TemplateSnapshot.MAGIC, 99, 0));
+        assertCorrupt(dir, "Corrupt template pack, template count -1 is out of range",
+                pack(TemplateSnapshot.MAGIC, TemplateSnapshot.VERSION, -1));
+        assertCorrupt(dir, "Corrupt template pack, template count 2147483647 is out of range",
+                pack(TemplateSnapshot.MAGIC, TemplateSnapshot.VERSION, Integer.MAX_VALUE));
+        assertCorrupt(dir, "Corrupt template pack, name length -5 is out of range",
+                pack(TemplateSnapshot.MAGIC, TemplateSnapshot.VERSION, 1, -5, 0, 0, 0, 0, 0));
+        assertCorrupt(dir, "Corrupt template pack, name length 1000 is out of range",
+                pack(TemplateSnapshot.MAGIC, TemplateSnapshot.VERSION, 1, 1000, 0, 0, 0, 0, 0));
+        assertCorrupt(dir, "Corrupt template pack, the body of  is out of range",
+                pack(TemplateSnapshot.MAGIC, TemplateSnapshot.VERSION, 1, 0, 0, 0, -1, 0));
+        assertCorrupt(dir, "Corrupt template pack, the body of  is out of range",
+                pack(TemplateSnapshot.MAGIC, TemplateSnapshot.VERSION, 1, 0, 0, 0, 0, Integer.MIN_VALUE));
+        assertCorrupt(dir, "Truncated template pack, the body of  is missing",
+                pack(TemplateSnapshot.MAGIC, TemplateSnapshot.VERSION, 1, 0, 0, 0, 0, 10));
+
+        // Cut anywhere
+        ByteArrayOutputStream valid = new ByteArrayOutputStream();
+        TemplateSnapshot.write(Collections.singletonMap("t.ftl", "text"), 0, valid);
+        for (int length = 0; length < valid.size(); length++) {
+            Path file = dir.resolve("cut.pack");
+            Files.write(file, Arrays.copyOf(valid.toByteArray(), length));
+            assertThrows(IOException.class, () -> new MappedTemplateLoader(file), "Cut at " + length);
+        }
+    }
+
+    private static void assertCorrupt(Path dir, String message, byte[] pack) throws IOException {
+        Path file = dir.resolve("corrupt.pack");
+        Files.write(file, pack);
+        assertEquals(message, assertThrows(IOException.class, () -> new MappedTemplateLoader(file)).getMessage());
+    }
+
+    // The ints of the header and the index, the last modified of a template counting as 2 ints
+    private static byte[] pack(int... ints) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        for (int i : ints) {
+            data.writeInt(i);
+        }
+        return out.toByteArray();
+    }
+
+    private static void write(Path file, String text, long lastModified) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+    }
+}
@@ -0,0 +1,78 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import freemarker.template.TemplateException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+public class MeteredRendererTests {
+
+    @Test
+    void modelAccesses() throws Exception {
+        Configuration cfg = TemplateFixtures.configuration("t.ftl", "${user} ${user} ${site} ${missing!'-'}");
+        cfg.setSharedVariable("site", "example.com");
+        InMemoryRenderMetricsRegistry registry = new InMemoryRenderMetricsRegistry();
+        MeteredRenderer renderer = new MeteredRenderer(registry);
+
+        StringWriter out = new StringWriter();
+        renderer.process(cfg.getTemplate("t.ftl"), Collections.singletonMap("user", "Joe"), out);
+        assertEquals("Joe Joe example.com -", out.toString());
+
+        InMemoryRenderMetricsRegistry.TemplateStats stats = registry.getStats("t.ftl");
+        // Neither the shared variable nor the missing one
+        assertEquals(Collections.singletonMap("user", 2L), stats.getModelAccesses());
+        assertEquals(1, stats.getRenderCount());
+        assertEquals(out.toString().length(), stats.getOutputSize());
+        assertEquals(1, stats.getLatency().getTotalCount());
+    }
+
+    @Test
+    void outputSizeInBytes() throws Exception {
+        Configuration cfg = TemplateFixtures.configuration("t.ftl", "${x}");
+        InMemoryRenderMetricsRegistry registry = new InMemoryRenderMetricsRegistry();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new MeteredRenderer(registry).renderTo(cfg.getTemplate("t.ftl"), Collections.singletonMap("x", "中文"),
+                Channels.newChannel(out));
+        assertEquals(6, out.size());
+        assertEquals(6, registry.getStats("t.ftl").getOutputSize());
+    }
+
+    @Test
+    void errors() throws Exception {
+        Configuration cfg = TemplateFixtures.configuration("t.ftl", "${x} ${y}");
+        InMemoryRenderMetricsRegistry registry = new InMemoryRenderMetricsRegistry();
+        MeteredRenderer renderer = new MeteredRenderer(registry);
+        Map<String, Object> dataModel = new HashMap<>();
+        dataModel.put("x", 1);
+
+        assertThrows(TemplateException.class,
+                () -> renderer.process(cfg.getTemplate("t.ftl"), dataModel, new StringWriter()));
+        InMemoryRenderMetricsRegistry.TemplateStats stats = registry.getStats("t.ftl");
+        assertEquals(1, stats.getRenderCount());
+        assertEquals(1, stats.getErrors().size());
+        assertEquals(Collections.singletonMap("x", 1L), stats.getModelAccesses());
+    }
+
+    @Test
+    void noopRegistry() throws Exception {
+        Configuration cfg = TemplateFixtures.configuration("t.ftl", "${x}");
+        StringWriter out = new StringWriter();
+        new MeteredRenderer(NoopRenderMetricsRegistry.INSTANCE)
+                .process(cfg.getTemplate("t.ftl"), Collections.singletonMap("x", "y"), out);
+        assertEquals("y", out.toString());
+    }
+}
@@ -0,0 +1,207 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The renders run one at a time on a {@link StepExecutor}, so the order the service dispatches them in is the order
+ * they run in. The render durations are the ones the renders add to a {@link Clock} instead of real time.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+public class RenderServiceTests {
+
+    private static final Configuration CFG = TemplateFixtures.configuration("t", "${x}");
+
+    @Test
+    void cheapTenantNotStuckBehindExpensiveOne() throws Exception {
+        StepExecutor executor = new StepExecutor();
+        Clock clock = new Clock();
+        List<String> order = new ArrayList<>();
+        try (RenderService service = new RenderService(CFG, executor, 1, 10, clock::get)) {
+            for (int i = 1; i <= 3; i++) {
+                submit(service, clock, "heavy", "h" + i, 20, order);
+            }
+            for (int i = 1; i <= 3; i++) {
+                submit(service, clock, "light", "l" + i, 1, order);
+            }
+            executor.runAll();
+        }
+        assertEquals(Arrays.asList("h1", "l1", "l2", "l3", "h2", "h3"), order);
+    }
+
+    @Test
+    void higherWeightGetsMoreSlots() throws Exception {
+        StepExecutor executor = new StepExecutor();
+        Clock clock = new Clock();
+        List<String> order = new ArrayList<>();
+        try (RenderService service = new RenderService(CFG, executor, 1, 10, clock::get)) {
+            service.setTenantWeight("gold", 10);
+            for (int i = 1; i <= 2; i++) {
+                submit(service, clock, "basic", "b" + i, 5, order);
+            }
+            for (int i = 1; i <= 3; i++) {
+                submit(service, clock, "gold", "g" + i, 5, order);
+            }
+            executor.runAll();
+        }
+        assertEquals(Arrays.asList("b1", "g1", "g2", "g3", "b2"), order);
+    }
+
+    @Test
+    void queueLimitPerTenant() throws Exception {
+        StepExecutor executor = new StepExecutor();
+        try (RenderService service = new RenderService(CFG, executor, 1, 2)) {
+            List<CompletableFuture<String>> renders = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                renders.add(service.renderToString("a", "t", Collections.singletonMap("x", i)));
+            }
+            assertEquals(1, service.getRunningCount());
+            assertEquals(2, service.getQueuedCount("a"));
+            assertRejected(renders.get(3));
+            // The limit is per tenant
+            CompletableFuture<String> other = service.renderToString("b", "t", Collections.singletonMap("x", 9));
+
+            executor.runAll();
+            assertEquals("0", renders.get(0).get());
+            assertEquals("1", renders.get(1).get());
+            assertEquals("2", renders.get(2).get());
+            assertEquals("9", other.get());
+            assertEquals(0, service.getRunningCount());
+        }
+    }
+
+    @Test
+    void closeRejectsWaitingAndNewRenders() throws Exception {
+        StepExecutor executor = new StepExecutor();
+        RenderService service = new RenderService(CFG, executor, 1, 10);
+        CompletableFuture<String> running = service.renderToString("a", "t", Collections.singletonMap("x", 1));
+        CompletableFuture<String> waiting = service.renderToString("a", "t", Collections.singletonMap("x", 2));
+        service.close();
+
+        assertRejected(waiting);
+        assertRejected(service.renderToString("a", "t", Collections.singletonMap("x", 3)));
+        assertFalse(running.isDone());
+        executor.runAll();
+        assertEquals("1", running.get());
+    }
+
+    @Test
+    void idleTenantsDropped() throws Exception {
+        StepExecutor executor = new StepExecutor();
+        Clock clock = new Clock();
+        List<String> order = new ArrayList<>();
+        try (RenderService service = new RenderService(CFG, executor, 1, 10, clock::get)) {
+            service.setTenantWeight("gold", 10);
+            submit(service, clock, "basic", "b1", 5, order);
+            submit(service, clock, "gold", "g1", 5, order);
+            assertEquals(2, service.getActiveTenantCount());
+            executor.runAll();
+            assertEquals(0, service.getActiveTenantCount());
+
+            // The weight is kept
+            for (int i = 2; i <= 3; i++) {
+                submit(service, clock, "basic", "b" + i, 5, order);
+            }
+            for (int i = 2; i <= 4; i++) {
+                submit(service, clock, "gold", "g" + i, 5, order);
+            }
+            executor.runAll();
+            assertEquals(0, service.getActiveTenantCount());
+        }
+        assertEquals(Arrays.asList("b1", "g1", "b2", "g2", "g3", "g4", "b3"), order);
+    }
+
+    private static void submit(RenderService service, Clock clock, String tenant, String label, long millis,
+                               List<String> order) {
+        service.submit(tenant, "t", template -> {
+            order.add(label);
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+            return null;
+        });
+    }
+
+    private static void assertRejected(CompletableFuture<?> render) {
+        assertTrue(render.isCompletedExceptionally());
+        ExecutionException e = assertThrows(ExecutionException.class, render::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+
+    /**
+     * The nano time, only moving when a render says it took some.
+     */
+    private static final class Clock extends AtomicLong {
+    }
+
+    /**
+     * Runs the submitted tasks one by one on the test thread, when asked to.
+     */
+    private static final class StepExecutor extends AbstractExecutorService {
+
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean shutdown;
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = poll()) != null) {
+                task.run();
+            }
+        }
+
+        private synchronized Runnable poll() {
+            return tasks.poll();
+        }
+
+        @Override
+        public synchronized void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public synchronized List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> pending = new ArrayList<>(tasks);
+            tasks.clear();
+            return pending;
+        }
+
+        @Override
+        public synchronized boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public synchronized boolean isTerminated() {
+            return shutdown && tasks.isEmpty();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return isTerminated();
+        }
+    }
+}
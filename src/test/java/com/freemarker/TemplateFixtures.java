@@ -0,0 +1,65 @@
+package com.freemarker;
+
+import freemarker.cache.StringTemplateLoader;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * The templates and Configurations the tests of com.freemarker render with.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 21:05
+ */
+public final class TemplateFixtures {
+
+    private TemplateFixtures() {
+    }
+
+    /**
+     * @param namesAndSources a template name, its source, the next name, ...
+     */
+    public static StringTemplateLoader loader(String... namesAndSources) {
+        if (namesAndSources.length % 2 != 0) {
+            throw new IllegalArgumentException("A source is missing: " + namesAndSources.length + " arguments");
+        }
+        StringTemplateLoader loader = new StringTemplateLoader();
+        for (int i = 0; i < namesAndSources.length; i += 2) {
+            loader.putTemplate(namesAndSources[i], namesAndSources[i + 1]);
+        }
+        return loader;
+    }
+
+    /**
+     * A plain Configuration (not the one of {@link FreemarkderDemo}) with the templates, without localized lookup.
+     *
+     * @param namesAndSources see {@link #loader}
+     */
+    public static Configuration configuration(String... namesAndSources) {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
+        cfg.setTemplateLoader(loader(namesAndSources));
+        cfg.setLocalizedLookup(false);
+        return cfg;
+    }
+
+    /**
+     * The source parsed as "t.ftl" of a {@link #configuration}.
+     */
+    public static Template template(String source) throws IOException {
+        return configuration("t.ftl", source).getTemplate("t.ftl");
+    }
+
+    public static String render(Template template, Object dataModel) throws IOException, TemplateException {
+        StringWriter out = new StringWriter();
+        template.process(dataModel, out);
+        return out.toString();
+    }
+
+    public static String render(Configuration cfg, String templateName, Object dataModel)
+            throws IOException, TemplateException {
+        return render(cfg.getTemplate(templateName), dataModel);
+    }
+}
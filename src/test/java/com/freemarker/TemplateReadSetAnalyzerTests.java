@@ -0,0 +1,85 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:50
+ */
+public class TemplateReadSetAnalyzerTests {
+
+    @Test
+    void demoTemplate() throws IOException {
+        Configuration cfg = FreemarkderDemo.createConfiguration();
+        assertEquals(paths("latestProduct.name", "latestProduct.url", "user"),
+                TemplateReadSetAnalyzer.analyze(cfg.getTemplate("test.ftlh")).getPaths().toString());
+    }
+
+    @Test
+    void listedElementsAndDynamicKeys() throws IOException {
+        assertEquals(paths("key", "map[]", "products", "products[].name", "products[].tags", "products[].tags[]"),
+                readSet("<#list products as p>${p.name}<#list p.tags as t>${t}</#list></#list>${map[key]!}"));
+    }
+
+    @Test
+    void assignedValueIsReadFirst() throws IOException {
+        assertEquals(paths("title", "user"), readSet("<#assign title = title!\"Default\">${title} ${user}"));
+    }
+
+    @Test
+    void conditionalAssignment() throws IOException {
+        assertEquals(paths("user", "x"), readSet("<#if x??><#assign user = user?upper_case></#if>${user}"));
+        assertEquals(paths("products", "total"),
+                readSet("<#list products as p><#assign total = 0></#list>${total}"));
+    }
+
+    @Test
+    void assignedVariables() throws IOException {
+        assertEquals(paths("user.name"), readSet("<#assign name = user.name>${name} <#if true>${name}</#if>"));
+        assertEquals(paths("count"), readSet("<#assign count += 1>${count}"));
+        assertEquals(paths(), readSet("<#assign body>text</#assign>${body}"));
+    }
+
+    @Test
+    void loopVariablesAndMacroParameters() throws IOException {
+        assertEquals(paths("items", "items[]", "items[].price"),
+                readSet("<#macro show item>${item.label}</#macro><#list items as i><@show item=i/>${i.price}</#list>"));
+    }
+
+    @Test
+    void includedTemplates() throws IOException {
+        Configuration cfg = TemplateFixtures.configuration(
+                "pages/page.ftl", "<#include \"header.ftl\">${body}",
+                "pages/header.ftl", "<#include \"/parts/title.ftl\">",
+                "parts/title.ftl", "${title}");
+        assertEquals(paths("body", "title"),
+                TemplateReadSetAnalyzer.analyze(cfg.getTemplate("pages/page.ftl")).getPaths().toString());
+    }
+
+    @Test
+    void isRead() throws IOException {
+        TemplateReadSetAnalyzer.ReadSet readSet = TemplateReadSetAnalyzer.analyze(TemplateFixtures.template("${a.b.c}"));
+        assertTrue(readSet.isKnown());
+        assertTrue(readSet.isRead("a"));
+        assertTrue(readSet.isRead("a.b.c.d"));
+        assertFalse(readSet.isRead("a.x"));
+        assertEquals(new TreeSet<>(Arrays.asList("a")), readSet.getRootVariables());
+    }
+
+    private static String readSet(String source) throws IOException {
+        return TemplateReadSetAnalyzer.analyze(TemplateFixtures.template(source)).getPaths().toString();
+    }
+
+    private static String paths(String... paths) {
+        return new TreeSet<>(Arrays.asList(paths)).toString();
+    }
+}
@@ -0,0 +1,147 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+public class TemplateWarmupTests {
+
+    @Test
+    void splitPath() {
+        assertEquals(Arrays.asList("a", "b", "[]", "c"), TemplateWarmup.splitPath("a.b[].c"));
+        assertEquals(Arrays.asList("a", "[]", "[]"), TemplateWarmup.splitPath("a[][]"));
+        assertEquals(Collections.singletonList("a"), TemplateWarmup.splitPath("a"));
+    }
+
+    @Test
+    void syntheticDataModel() throws IOException {
+        Map<String, Object> dataModel = TemplateWarmup.createSyntheticDataModel(TemplateFixtures.template(
+                "${user.name} <#list items as i>${i.label}</#list> <#list tags as t>${t}</#list>"));
+
+        assertEquals("{items=[{label=warm-up}], tags=[warm-up], user={name=warm-up}}", dataModel.toString());
+    }
+
+    @Test
+    void syntheticDataModelWithTemplateBeans() throws IOException {
+        Configuration cfg = FreemarkderDemo.createConfiguration(TemplateFixtures.loader(
+                "t.ftlh", "${latestProduct.name} ${other.name} ${other.price}"));
+        Map<String, Object> dataModel = TemplateWarmup.createSyntheticDataModel(cfg.getTemplate("t.ftlh"));
+
+        Product product = assertInstanceOf(Product.class, dataModel.get("latestProduct"));
+        assertEquals("warm-up", product.getName());
+        // price is not a Product property
+        assertInstanceOf(Map.class, dataModel.get("other"));
+    }
+
+    @Test
+    void toBeansPicksTheClosestClass() {
+        Set<Class<?>> beanClasses = new LinkedHashSet<>(Arrays.asList(Detailed.class, Named.class));
+
+        assertInstanceOf(Named.class, TemplateWarmup.toBeans(hash("name"), beanClasses));
+        Detailed detailed = assertInstanceOf(Detailed.class, TemplateWarmup.toBeans(hash("name", "url"), beanClasses));
+        assertEquals("value of url", detailed.getUrl());
+        // Nothing to tell the class by, or a key no class has
+        assertInstanceOf(Map.class, TemplateWarmup.toBeans(new HashMap<String, Object>(), beanClasses));
+        assertInstanceOf(Map.class, TemplateWarmup.toBeans(hash("name", "other"), beanClasses));
+        assertInstanceOf(Map.class, TemplateWarmup.toBeans(hash("class"), beanClasses));
+
+        List<Object> list = new ArrayList<>(Collections.singletonList(hash("name")));
+        Map<String, Object> root = new HashMap<>();
+        root.put("items", list);
+        TemplateWarmup.toBeans(root, beanClasses);
+        assertInstanceOf(Named.class, list.get(0));
+    }
+
+    @Test
+    void readyAfterRunAndFragmentsCleared() throws Exception {
+        Configuration cfg = FreemarkderDemo.createConfiguration(TemplateFixtures.loader(
+                "t.ftlh", "<@cache key=\"k\">${user}</@cache>"));
+        FragmentCacheDirective cache = assertInstanceOf(FragmentCacheDirective.class, cfg.getSharedVariable("cache"));
+        TemplateWarmup warmup = new TemplateWarmup(cfg, Collections.singletonList("t.ftlh"))
+                .setTimePerTemplate(1, TimeUnit.MINUTES)
+                .setMaxRendersPerTemplate(5);
+        assertFalse(warmup.isReady());
+        assertFalse(warmup.awaitReady(0, TimeUnit.MILLISECONDS));
+
+        TemplateWarmup.Result result = warmup.run();
+        assertTrue(warmup.isReady());
+        assertTrue(warmup.awaitReady(0, TimeUnit.MILLISECONDS));
+        assertEquals(5, result.getRenderCount());
+        assertEquals(0, result.getFailureCount());
+        assertEquals(4, cache.getHitCount());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void failedRendersAreCounted() throws Exception {
+        Configuration cfg = TemplateFixtures.configuration("t.ftl", "${n * 2}");
+        TemplateWarmup.Result result = new TemplateWarmup(cfg, Collections.singletonList("t.ftl"))
+                .setTimePerTemplate(1, TimeUnit.MINUTES)
+                .setMaxRendersPerTemplate(3)
+                .run();
+        assertEquals(3, result.getFailureCount());
+
+        DataModelCodec.Capture capture = new DataModelCodec.Capture("t.ftl", Collections.singletonMap("n", 1));
+        result = new TemplateWarmup(cfg, Collections.singletonList("t.ftl"))
+                .setCaptures(Collections.singletonList(capture))
+                .setTimePerTemplate(1, TimeUnit.MINUTES)
+                .setMaxRendersPerTemplate(3)
+                .run();
+        assertEquals(0, result.getFailureCount());
+        assertEquals(3, result.getRenderCount());
+    }
+
+    private static Map<String, Object> hash(String... keys) {
+        Map<String, Object> hash = new LinkedHashMap<>();
+        for (String key : keys) {
+            hash.put(key, "value of " + key);
+        }
+        return hash;
+    }
+
+    public static class Named {
+
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    public static class Detailed extends Named {
+
+        private String url;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import freemarker.template.TemplateException;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+public class TenantConfigurationRegistryTests {
+
+    @Test
+    void sameParseSettingsShareTemplates() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        TenantConfigurationRegistry registry = new TenantConfigurationRegistry(() -> {
+            created.incrementAndGet();
+            return createConfiguration();
+        });
+        TenantConfigurationRegistry.Tenant a = registry.register("a",
+                settings("whitespace_stripping", "false", "number_format", "0.00"));
+        TenantConfigurationRegistry.Tenant b = registry.register("b",
+                settings("whitespace_stripping", "false", "locale", "de_DE"));
+        TenantConfigurationRegistry.Tenant c = registry.register("c", settings("number_format", "0"));
+
+        assertSame(a.getConfiguration(), b.getConfiguration());
+        assertSame(a.getTemplate("t.ftl"), b.getTemplate("t.ftl"));
+        assertEquals(2, registry.getConfigurationCount());
+        assertEquals(2, created.get());
+        assertSame(registry.get("c"), c);
+    }
+
+    @Test
+    void runtimeSettingsPerRender() throws Exception {
+        TenantConfigurationRegistry registry =
+                new TenantConfigurationRegistry(TenantConfigurationRegistryTests::createConfiguration);
+        TenantConfigurationRegistry.Tenant german = registry.register("de",
+                settings("number_format", "0.00", "locale", "de_DE"));
+        TenantConfigurationRegistry.Tenant plain = registry.register("plain", settings("number_format", "0"));
+
+        assertSame(german.getTemplate("t.ftl"), plain.getTemplate("t.ftl"));
+        assertEquals("1,50", render(german));
+        assertEquals("2", render(plain));
+        // Not left on the shared Configuration
+        assertEquals("1.5", TemplateFixtures.render(german.getTemplate("t.ftl"), Collections.singletonMap("n", 1.5)));
+    }
+
+    @Test
+    void strictBeanModelsRejected() throws Exception {
+        TenantConfigurationRegistry registry =
+                new TenantConfigurationRegistry(TenantConfigurationRegistryTests::createConfiguration);
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.register("a", settings("strict_bean_models", "true")));
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.register("a", settings("strictBeanModels", "true")));
+        assertNull(registry.get("a"));
+    }
+
+    @Test
+    void invalidSettingsFailAtRegister() throws Exception {
+        TenantConfigurationRegistry registry =
+                new TenantConfigurationRegistry(TenantConfigurationRegistryTests::createConfiguration);
+        assertThrows(TemplateException.class, () -> registry.register("a", settings("boolean_format", "yes")));
+        assertThrows(TemplateException.class, () -> registry.register("a", settings("tag_syntax", "curly")));
+        assertThrows(TemplateException.class, () -> registry.register("a", settings("no_such_setting", "1")));
+        assertNull(registry.get("a"));
+    }
+
+    @Test
+    void concurrentRegistrationsCreateOneConfiguration() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        TenantConfigurationRegistry registry = new TenantConfigurationRegistry(() -> {
+            created.incrementAndGet();
+            return createConfiguration();
+        });
+        int tenants = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(tenants);
+        try {
+            List<Future<TenantConfigurationRegistry.Tenant>> registered = new ArrayList<>();
+            for (int i = 0; i < tenants; i++) {
+                String id = "tenant" + i;
+                registered.add(executor.submit(() -> {
+                    start.await();
+                    return registry.register(id, settings("whitespace_stripping", "false"));
+                }));
+            }
+            start.countDown();
+            Configuration shared = registered.get(0).get().getConfiguration();
+            for (Future<TenantConfigurationRegistry.Tenant> tenant : registered) {
+                assertSame(shared, tenant.get().getConfiguration());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2, created.get());
+    }
+
+    private static Configuration createConfiguration() {
+        return TemplateFixtures.configuration("t.ftl", "${n}");
+    }
+
+    private static String render(TenantConfigurationRegistry.Tenant tenant) throws Exception {
+        StringWriter out = new StringWriter();
+        tenant.process("t.ftl", Collections.singletonMap("n", 1.5), out);
+        return out.toString();
+    }
+
+    private static Map<String, String> settings(String... namesAndValues) {
+        Map<String, String> settings = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            settings.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return settings;
+    }
+}
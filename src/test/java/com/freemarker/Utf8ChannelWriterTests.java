@@ -0,0 +1,147 @@
+package com.freemarker;
+
+import freemarker.template.Template;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:58
+ */
+public class Utf8ChannelWriterTests {
+
+    // 1, 2, 3 and 4 bytes (a surrogate pair) in UTF-8
+    private static final String MIXED = "aé中😀";
+
+    @Test
+    void encoding() throws IOException {
+        StringBuilder text = new StringBuilder();
+        // More than a buffer of chars, so the encoder overflows and drains in between
+        while (text.length() < Utf8ChannelWriter.CHAR_BUFFER_SIZE * 3) {
+            text.append(MIXED);
+        }
+        RecordingChannel channel = new RecordingChannel(7);
+        try (Utf8ChannelWriter out = Utf8ChannelWriter.acquire(channel)) {
+            out.write(text.toString());
+            out.write('!');
+            out.write(MIXED.toCharArray(), 1, 2);
+        }
+        assertEquals(text + "!" + MIXED.substring(1, 3), channel.text());
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    void surrogatePairSplitAcrossWrites() throws IOException {
+        RecordingChannel channel = new RecordingChannel(Integer.MAX_VALUE);
+        try (Utf8ChannelWriter out = Utf8ChannelWriter.acquire(channel)) {
+            out.write("x\ud83d");
+            // The high surrogate waits for its pair
+            out.flush();
+            assertEquals("x", channel.text());
+            out.write("\ude00y");
+        }
+        assertEquals("x😀y", channel.text());
+    }
+
+    @Test
+    void preEncodedText() throws Exception {
+        Template template = TemplateFixtures.template("<p>Café 中文</p>${x}<p>😀</p>");
+        assertEquals(2, PreEncodedText.of(template).getBlockCount());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FreemarkderDemo.renderTo(template, Collections.singletonMap("x", "ü"), Channels.newChannel(out));
+        assertArrayEquals(TemplateFixtures.render(template, Collections.singletonMap("x", "ü"))
+                .getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+    @Test
+    void writeEncoded() throws IOException {
+        RecordingChannel channel = new RecordingChannel(Integer.MAX_VALUE);
+        byte[] utf8 = new byte[Utf8ChannelWriter.BYTE_BUFFER_SIZE + 10];
+        Arrays.fill(utf8, (byte) 'b');
+        try (Utf8ChannelWriter out = Utf8ChannelWriter.acquire(channel)) {
+            out.write("a");
+            out.writeEncoded(utf8, 0, utf8.length);
+            out.write("c");
+        }
+        assertEquals("a" + new String(utf8, StandardCharsets.US_ASCII) + "c", channel.text());
+    }
+
+    @Test
+    void release() throws IOException {
+        RecordingChannel channel = new RecordingChannel(Integer.MAX_VALUE);
+        Utf8ChannelWriter out = Utf8ChannelWriter.acquire(channel);
+        // A render inside the render gets its own writer
+        Utf8ChannelWriter nested = Utf8ChannelWriter.acquire(channel);
+        assertNotSame(out, nested);
+        nested.close();
+        out.write("text");
+        out.close();
+        // Already back in the pool, nothing happens
+        out.close();
+
+        assertEquals("text", channel.text());
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    void fullNonBlockingChannel() throws IOException {
+        Utf8ChannelWriter out = Utf8ChannelWriter.acquire(new RecordingChannel(0));
+        out.write("text");
+        assertThrows(IOException.class, out::flush);
+        out.close();
+    }
+
+    /**
+     * Keeps the bytes written, taking at most maxWrite of them per write.
+     */
+    private static final class RecordingChannel implements WritableByteChannel {
+
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        private final int maxWrite;
+
+        private boolean open = true;
+
+        RecordingChannel(int maxWrite) {
+            this.maxWrite = maxWrite;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = Math.min(src.remaining(), maxWrite);
+            for (int i = 0; i < n; i++) {
+                written.write(src.get());
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        String text() {
+            return new String(written.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+public class WatchingTemplateLoaderTests {
+
+    // The WatchService of some platforms polls, every few seconds
+    private static final long TIMEOUT_SECONDS = 30;
+
+    @Test
+    void changedTemplateRenderedAgain(@TempDir Path dir) throws Exception {
+        write(dir, "page.ftl", "<#include \"parts/header.ftl\">body");
+        write(dir, "parts/header.ftl", "old ");
+        try (WatchingTemplateLoader loader = new WatchingTemplateLoader(dir)) {
+            Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
+            loader.install(cfg);
+            assertEquals("old body", render(cfg, "page.ftl"));
+
+            write(dir, "parts/header.ftl", "new ");
+            awaitUntil(() -> render(cfg, "page.ftl").equals("new body"));
+        }
+    }
+
+    @Test
+    void includingTemplatesGetNewVersion(@TempDir Path dir) throws Exception {
+        write(dir, "page.ftl", "<#include \"header.ftl\">");
+        write(dir, "header.ftl", "old");
+        try (WatchingTemplateLoader loader = new WatchingTemplateLoader(dir)) {
+            Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
+            loader.install(cfg);
+            render(cfg, "page.ftl");
+            long pageVersion = loader.getLastModified(loader.findTemplateSource("page.ftl"));
+
+            write(dir, "header.ftl", "new");
+            awaitUntil(() -> loader.getLastModified(loader.findTemplateSource("page.ftl")) != pageVersion);
+        }
+    }
+
+    @Test
+    void deletedDirectoryRemovesItsTemplates(@TempDir Path dir) throws Exception {
+        write(dir, "page.ftl", "<#include \"parts/header.ftl\">");
+        write(dir, "parts/header.ftl", "header");
+        write(dir, "parts/deeper/footer.ftl", "footer");
+        try (WatchingTemplateLoader loader = new WatchingTemplateLoader(dir)) {
+            Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
+            loader.install(cfg);
+            render(cfg, "page.ftl");
+            long pageVersion = loader.getLastModified(loader.findTemplateSource("page.ftl"));
+            assertNotNull(loader.findTemplateSource("parts/deeper/footer.ftl"));
+
+            // Moved away in one step, so only the directory itself is reported deleted
+            Files.move(dir.resolve("parts"), Files.createTempDirectory("moved").resolve("parts"));
+            // The includers get their new version right after the templates are removed
+            awaitUntil(() -> loader.getLastModified(loader.findTemplateSource("page.ftl")) != pageVersion);
+            assertNull(loader.findTemplateSource("parts/header.ftl"));
+            assertNull(loader.findTemplateSource("parts/deeper/footer.ftl"));
+        }
+    }
+
+    @Test
+    void includePathsResolvedLikeFreeMarker() {
+        assertEquals("a/b.ftl", TemplateNames.resolve("a/page.ftl", "b.ftl"));
+        assertEquals("b.ftl", TemplateNames.resolve("a/page.ftl", "/b.ftl"));
+        assertEquals("b.ftl", TemplateNames.resolve("a/page.ftl", "../b.ftl"));
+        assertNull(TemplateNames.resolve("page.ftl", "../b.ftl"));
+    }
+
+    private static void write(Path dir, String name, String text) throws IOException {
+        Path file = dir.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String render(Configuration cfg, String name) {
+        try {
+            StringWriter out = new StringWriter();
+            cfg.getTemplate(name).process(Collections.emptyMap(), out);
+            return out.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.freemarker;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:55
+ */
+public class WeightedTinyLfuCacheStorageTests {
+
+    private static final int TEMPLATES = 100;
+
+    @Test
+    void estimatedSize() throws IOException {
+        WeightedTinyLfuCacheStorage storage = new WeightedTinyLfuCacheStorage(1024 * 1024, 16);
+        Configuration cfg = createConfiguration(storage);
+        Template small = cfg.getTemplate("small");
+        Template large = cfg.getTemplate("large");
+
+        long smallSize = WeightedTinyLfuCacheStorage.estimateSize(small);
+        long largeSize = WeightedTinyLfuCacheStorage.estimateSize(large);
+        assertTrue(largeSize >= 6 * 10_000 && largeSize <= 6 * 10_100 + 256, "large: " + largeSize);
+        assertTrue(smallSize < 512, "small: " + smallSize);
+        assertEquals(smallSize + largeSize, storage.getStats().getWeightedSize());
+    }
+
+    @Test
+    void maximumWeight() throws IOException {
+        WeightedTinyLfuCacheStorage storage = new WeightedTinyLfuCacheStorage(1000, 16, template -> 100);
+        Configuration cfg = createConfiguration(storage);
+        for (int i = 0; i < TEMPLATES; i++) {
+            cfg.getTemplate("t" + i);
+        }
+
+        WeightedTinyLfuCacheStorage.Stats stats = storage.getStats();
+        assertTrue(stats.getWeightedSize() <= 1000, stats.toString());
+        assertTrue(stats.getSize() <= 10, stats.toString());
+        assertEquals(TEMPLATES - stats.getSize(), stats.getEvictionCount(), stats.toString());
+        assertEquals(TEMPLATES, stats.getLoadCount(), stats.toString());
+    }
+
+    @Test
+    void frequentTemplateSurvivesOneOffs() throws IOException {
+        WeightedTinyLfuCacheStorage storage = new WeightedTinyLfuCacheStorage(1000, 16, template -> 100);
+        Configuration cfg = createConfiguration(storage);
+        for (int i = 0; i < 20; i++) {
+            cfg.getTemplate("small");
+        }
+        for (int i = 0; i < TEMPLATES; i++) {
+            cfg.getTemplate("t" + i);
+        }
+
+        long loads = storage.getStats().getLoadCount();
+        cfg.getTemplate("small");
+        assertEquals(loads, storage.getStats().getLoadCount(), "small was evicted");
+    }
+
+    @Test
+    void concurrentReads() throws Exception {
+        WeightedTinyLfuCacheStorage storage = new WeightedTinyLfuCacheStorage(1000, 16, template -> 100);
+        Configuration cfg = createConfiguration(storage);
+        int threads = 8;
+        int reads = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < reads; i++) {
+                        // Mostly the same few, now and then another one
+                        String name = i % 10 == 0 ? "t" + (i / 10 % TEMPLATES) : "t" + (i % 3);
+                        assertEquals(name, cfg.getTemplate(name).getName());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        WeightedTinyLfuCacheStorage.Stats stats = storage.getStats();
+        assertEquals((long) threads * reads, stats.getHitCount() + stats.getMissCount(), stats.toString());
+        assertTrue(stats.getWeightedSize() <= 1000, stats.toString());
+        assertEquals(stats.getSize(), storage.getSize());
+        // The templates read the most stayed
+        long loads = stats.getLoadCount();
+        cfg.getTemplate("t1");
+        cfg.getTemplate("t2");
+        assertEquals(loads, storage.getStats().getLoadCount(), stats.toString());
+    }
+
+    private static Configuration createConfiguration(WeightedTinyLfuCacheStorage storage) {
+        List<String> namesAndSources = new ArrayList<>(Arrays.asList("small", "${x}"));
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            large.append(new String(new char[99]).replace('\0', 'a')).append('\n');
+        }
+        namesAndSources.addAll(Arrays.asList("large", large.toString()));
+        for (int i = 0; i < TEMPLATES; i++) {
+            namesAndSources.addAll(Arrays.asList("t" + i, "template " + i));
+        }
+        Configuration cfg = TemplateFixtures.configuration(namesAndSources.toArray(new String[0]));
+        cfg.setCacheStorage(storage);
+        return cfg;
+    }
+}
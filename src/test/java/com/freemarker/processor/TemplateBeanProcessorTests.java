@@ -0,0 +1,123 @@
+package com.freemarker.processor;
+
+import com.freemarker.BeanAdapterFactory;
+import com.freemarker.TemplateFixtures;
+import freemarker.template.Configuration;
+import freemarker.template.TemplateModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compiles beans with the processor, then renders them through the adapters it generated.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:59
+ */
+public class TemplateBeanProcessorTests {
+
+    private static final String ITEM = "package com.example;\n"
+            + "\n"
+            + "@com.freemarker.TemplateBean\n"
+            + "public class Item {\n"
+            + "    public String getName() { return \"pen\"; }\n"
+            + "    public String getURL() { return \"/pen\"; }\n"
+            + "    public boolean isActive() { return true; }\n"
+            + "    public int getPrice() { return 3; }\n"
+            + "    public static String getIgnored() { return \"static\"; }\n"
+            + "    public String getIgnoredToo(int i) { return \"parameter\"; }\n"
+            + "}\n";
+
+    @Test
+    void renderThroughGeneratedAdapter(@TempDir Path classes) throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = compile(classes, "com.example.Item", ITEM);
+        assertTrue(diagnostics.getDiagnostics().isEmpty(), diagnostics.getDiagnostics().toString());
+        assertTrue(Files.isRegularFile(classes.resolve("com/example/ItemTemplateModel.class")));
+        assertEquals(Collections.singletonList("com.example.ItemTemplateModel$Factory"),
+                Files.readAllLines(classes.resolve(TemplateBeanProcessor.FACTORY_SERVICE)));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()},
+                TemplateBeanProcessorTests.class.getClassLoader())) {
+            Class<?> itemClass = loader.loadClass("com.example.Item");
+            Configuration cfg = TemplateFixtures.configuration("t.ftl",
+                    "${item.name} ${item.URL} ${item.active?c} ${item.price + 1} ${item.ignored!'-'} "
+                            + "<#list item?keys as k>${k} </#list>${item?size}");
+            TemplateModel item = adapt(loader, itemClass, itemClass.getConstructor().newInstance(), cfg);
+
+            assertEquals("pen /pen true 4 - URL active name price 4",
+                    TemplateFixtures.render(cfg, "t.ftl", Collections.singletonMap("item", item)));
+        }
+    }
+
+    @Test
+    void nonPublicClassRejected(@TempDir Path classes) throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = compile(classes, "com.example.Hidden",
+                "package com.example;\n@com.freemarker.TemplateBean\nclass Hidden {\n}\n");
+
+        List<Diagnostic<? extends JavaFileObject>> errors = diagnostics.getDiagnostics();
+        assertEquals(1, errors.size(), errors.toString());
+        assertEquals(Diagnostic.Kind.ERROR, errors.get(0).getKind());
+        assertEquals("@TemplateBean must be put on a public class", errors.get(0).getMessage(null));
+        assertFalse(Files.exists(classes.resolve(TemplateBeanProcessor.FACTORY_SERVICE)));
+    }
+
+    private static DiagnosticCollector<JavaFileObject> compile(Path classes, String className, String source)
+            throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler, "Needs a JDK");
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> options = Arrays.asList("-d", classes.toString(),
+                "-classpath", System.getProperty("java.class.path"), "-Xlint:none");
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null,
+                Collections.singletonList(new StringSource(className, source)));
+        task.setProcessors(Collections.singletonList(new TemplateBeanProcessor()));
+        task.call();
+        return diagnostics;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static TemplateModel adapt(ClassLoader loader, Class<?> beanClass, Object bean, Configuration cfg) {
+        for (BeanAdapterFactory factory : ServiceLoader.load(BeanAdapterFactory.class, loader)) {
+            if (factory.getBeanClass() == beanClass) {
+                return factory.adapt(bean, cfg.getObjectWrapper());
+            }
+        }
+        throw new AssertionError("No factory for " + beanClass);
+    }
+
+    private static final class StringSource extends SimpleJavaFileObject {
+
+        private final String source;
+
+        StringSource(String className, String source) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.junit.ParallelExecution;
+
+import org.junit.TestInterfacesAndDefaultMethods.TestDurations;
+import org.junit.platform.engine.ConfigurationParameters;
+import org.junit.platform.engine.support.hierarchical.ParallelExecutionConfiguration;
+import org.junit.platform.engine.support.hierarchical.ParallelExecutionConfigurationStrategy;
+
+import java.nio.file.Paths;
+import java.util.logging.Logger;
+
+/**
+ * Sizes the test thread pool from the CPU count and from how much the tests waited in earlier runs, instead of the
+ * fixed factor of the dynamic strategy. Enabled in junit-platform.properties:
+ * <pre>
+ * junit.jupiter.execution.parallel.config.strategy = custom
+ * junit.jupiter.execution.parallel.config.custom.class = org.junit.ParallelExecution.AdaptiveParallelExecutionStrategy
+ * </pre>
+ * The parallelism is cpus x (1 + wait / cpu), the usual size of a pool for tasks that block (so the CPUs are kept
+ * busy while some tests wait for IO), where wait / cpu comes from the wall time and the CPU time of the test
+ * methods in the last run, as written to {@link TestDurations} by
+ * {@link org.junit.TestInterfacesAndDefaultMethods.TimingExtension}. The CPU time is the one of the threads running
+ * the methods, so the work a test hands to its own threads is mistaken for waiting. Without durations it is cpus x
+ * factor. Either way it's at least cpus, and at most cpus x max-factor: the wall time of a run in parallel includes
+ * the time spent waiting for a CPU, so the estimate errs high.
+ *
+ * The configuration parameters, all prefixed with junit.jupiter.execution.parallel.config.adaptive.:
+ * <pre>
+ * factor          the parallelism per CPU without durations, 1
+ * max-factor      the parallelism per CPU at most, 4
+ * durations.file  the durations of the last run, .timings/test-durations.properties; the same file as
+ *                 timing.durations.file, so set both or neither
+ * mode            platform, or virtual (see below)
+ * </pre>
+ * The durations file is outside target/, so a mvn clean (on a CI, say) doesn't throw the measure away; cache the
+ * .timings directory between the builds of a CI to keep it.
+ * The tests that block the most should be annotated with {@link IoBound}: they are limited to
+ * {@link IoConcurrencyLimit#PERMITS_PARAMETER} at a time, and a worker waiting for its turn is compensated with a spare
+ * thread, so a larger pool doesn't mean that many connections to the database under test.
+ *
+ * Virtual threads: the executor service is chosen by the Jupiter engine itself (a ForkJoinPool in 5.8), a strategy can
+ * only size it. mode = virtual is accepted so the setting can be shared with a newer engine, but it's run as platform
+ * threads, with a warning.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 22:10
+ */
+public class AdaptiveParallelExecutionStrategy implements ParallelExecutionConfigurationStrategy {
+
+    private static final Logger logger = Logger.getLogger(AdaptiveParallelExecutionStrategy.class.getName());
+
+    // The ConfigurationParameters given to a strategy are already prefixed with junit.jupiter.execution.parallel.config.
+    private static final String PREFIX = "adaptive.";
+
+    // Like the default strategies: the pool may add threads to make up for the ones blocked in joins
+    private static final int EXTRA_POOL_SIZE = 256;
+
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    @Override
+    public ParallelExecutionConfiguration createConfiguration(ConfigurationParameters configurationParameters) {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        double factor = configurationParameters.get(PREFIX + "factor", Double::parseDouble).orElse(1.0);
+        double maxFactor = configurationParameters.get(PREFIX + "max-factor", Double::parseDouble).orElse(4.0);
+        String durationsFile = configurationParameters.get(PREFIX + "durations.file")
+                .orElse(TestDurations.DEFAULT_FILE);
+        String mode = configurationParameters.get(PREFIX + "mode").orElse("platform");
+        if (mode.equals("virtual")) {
+            logger.warning("Virtual threads are not supported by this JUnit Jupiter version, running on platform threads");
+        } else if (!mode.equals("platform")) {
+            throw new IllegalArgumentException("Unknown " + PREFIX + "mode: " + mode);
+        }
+
+        TestDurations.Totals totals = TestDurations.readTotals(Paths.get(durationsFile));
+        double perCpu = totals != null ? 1 + totals.getWaitRatio() : factor;
+        int parallelism = (int) Math.round(cpus * Math.min(Math.max(perCpu, 1), maxFactor));
+        logger.info(() -> totals != null
+                ? String.format("Parallelism %d on %d CPUs: the %d methods of %s waited %.2f x their CPU time",
+                parallelism, cpus, totals.getMethodCount(), durationsFile, totals.getWaitRatio())
+                : String.format("Parallelism %d on %d CPUs, no test durations in %s", parallelism, cpus, durationsFile));
+        return new Configuration(parallelism);
+    }
+
+    private static final class Configuration implements ParallelExecutionConfiguration {
+
+        private final int parallelism;
+
+        Configuration(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        @Override
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        @Override
+        public int getMinimumRunnable() {
+            return parallelism;
+        }
+
+        @Override
+        public int getMaxPoolSize() {
+            return parallelism + EXTRA_POOL_SIZE;
+        }
+
+        @Override
+        public int getCorePoolSize() {
+            return parallelism;
+        }
+
+        @Override
+        public int getKeepAliveSeconds() {
+            return KEEP_ALIVE_SECONDS;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.junit.ParallelExecution;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the tests that mostly wait for IO: they are tagged "io", and at most
+ * {@link IoConcurrencyLimit#PERMITS_PARAMETER} of them run at a time, however large the pool is.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 22:10
+ */
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Tag("io")
+@ExtendWith(IoConcurrencyLimit.class)
+public @interface IoBound {
+
+}
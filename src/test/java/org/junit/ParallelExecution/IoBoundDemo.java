@@ -0,0 +1,58 @@
+package org.junit.ParallelExecution;
+
+import org.junit.TestInterfacesAndDefaultMethods.TimeExecutionLogger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.parallel.Execution;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.parallel.ExecutionMode.CONCURRENT;
+
+/**
+ * Tests that mostly wait, like the ones calling a remote service. They run concurrently, but at most
+ * {@link IoConcurrencyLimit#PERMITS_PARAMETER} at a time; their wait time ends up in the test durations, that
+ * {@link AdaptiveParallelExecutionStrategy} sizes the pool from.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 22:10
+ */
+@IoBound
+@Execution(CONCURRENT)
+public class IoBoundDemo implements TimeExecutionLogger {
+
+    private static final AtomicInteger running = new AtomicInteger();
+
+    private static volatile int permits;
+
+    // The limit IoConcurrencyLimit enforces, from the same configuration parameter
+    @RegisterExtension
+    static final BeforeAllCallback READ_PERMITS = context -> permits = IoConcurrencyLimit.getPermits(context);
+
+    @Test
+    void firstRemoteCall() throws InterruptedException {
+        remoteCall();
+    }
+
+    @Test
+    void secondRemoteCall() throws InterruptedException {
+        remoteCall();
+    }
+
+    @Test
+    void thirdRemoteCall() throws InterruptedException {
+        remoteCall();
+    }
+
+    private static void remoteCall() throws InterruptedException {
+        try {
+            assertTrue(running.incrementAndGet() <= permits);
+            TimeUnit.MILLISECONDS.sleep(50);
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+}
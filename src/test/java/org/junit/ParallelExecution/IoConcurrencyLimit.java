@@ -0,0 +1,77 @@
+package org.junit.ParallelExecution;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Lets at most junit.jupiter.execution.parallel.config.adaptive.io-permits (the CPU count by default) {@link IoBound}
+ * test methods run at a time. The permit is waited for with ForkJoinPool.managedBlock, so the Jupiter pool (a
+ * ForkJoinPool) starts a spare thread for the other tests meanwhile, instead of losing a worker.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 22:10
+ */
+public class IoConcurrencyLimit implements InvocationInterceptor {
+
+    public static final String PERMITS_PARAMETER = "junit.jupiter.execution.parallel.config.adaptive.io-permits";
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(IoConcurrencyLimit.class);
+
+    @Override
+    public void interceptTestMethod(Invocation<Void> invocation, ReflectiveInvocationContext<Method> invocationContext,
+                                    ExtensionContext extensionContext) throws Throwable {
+        proceedWithPermit(invocation, extensionContext);
+    }
+
+    @Override
+    public void interceptTestTemplateMethod(Invocation<Void> invocation,
+                                            ReflectiveInvocationContext<Method> invocationContext,
+                                            ExtensionContext extensionContext) throws Throwable {
+        proceedWithPermit(invocation, extensionContext);
+    }
+
+    /**
+     * The number of {@link IoBound} methods that may run at a time: {@link #PERMITS_PARAMETER}, or the CPU count.
+     */
+    public static int getPermits(ExtensionContext context) {
+        return context.getConfigurationParameter(PERMITS_PARAMETER).map(Integer::parseInt)
+                .orElse(Runtime.getRuntime().availableProcessors());
+    }
+
+    private static void proceedWithPermit(Invocation<Void> invocation, ExtensionContext context) throws Throwable {
+        // One for the whole run
+        Semaphore permits = context.getRoot().getStore(NAMESPACE).getOrComputeIfAbsent(Semaphore.class,
+                type -> new Semaphore(getPermits(context), true),
+                Semaphore.class);
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            private boolean acquired;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                if (!acquired) {
+                    permits.acquire();
+                    acquired = true;
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                if (!acquired) {
+                    acquired = permits.tryAcquire();
+                }
+                return acquired;
+            }
+        });
+        try {
+            invocation.proceed();
+        } finally {
+            permits.release();
+        }
+    }
+}
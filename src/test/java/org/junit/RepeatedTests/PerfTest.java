@@ -0,0 +1,67 @@
+package org.junit.RepeatedTests;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestTemplate;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.api.parallel.ResourceAccessMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.junit.jupiter.api.parallel.Resources;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A quick benchmark inside the test suite, like a JMH @Benchmark but run by mvn test:
+ * <pre>
+ * &#64;PerfTest(warmup = 2000, iterations = 5000, threads = 2, minOpsPerSecond = 1000)
+ * void render() throws Exception {
+ *     ...
+ * }
+ * </pre>
+ * The method runs in two phases, shown as two invocations of the test template:
+ * - warm-up: warmup calls on one thread, not measured, so the JIT compiles the code under test;
+ * - measurement: iterations calls on each of threads threads, started together. The throughput (calls per second of
+ *   wall time) and the p50/p99/max latency of a call are published as report entries, and the test fails if the
+ *   throughput is below minOpsPerSecond.
+ * The phases run one after the other on the same thread, even with the concurrent default execution mode of the
+ * suite, and nothing else runs meanwhile: the method holds the global resource lock, so the whole test class runs
+ * isolated (like a class annotated with &#64;Isolated), and the other tests don't share the measured window.
+ *
+ * Lifecycle methods (@BeforeEach, ...) run once per phase, not per call, and with threads &gt; 1 the method is called
+ * concurrently on the same test instance. This is no replacement for JMH (one fork, no blackhole, no dead code
+ * elimination protection): keep the floors well below what the code does, as a guard against big regressions.
+ * On a slow machine, scale all the floors down with the perftest.floor.factor configuration parameter (0 disables them).
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 21:40
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@TestTemplate
+@Execution(ExecutionMode.SAME_THREAD)
+@ResourceLock(value = Resources.GLOBAL, mode = ResourceAccessMode.READ_WRITE)
+@ExtendWith(PerfTestExtension.class)
+@Tag("perf")
+public @interface PerfTest {
+
+    /**
+     * Calls before the measurement, on one thread.
+     */
+    int warmup() default 1000;
+
+    /**
+     * Measured calls per thread.
+     */
+    int iterations() default 10000;
+
+    int threads() default 1;
+
+    /**
+     * The least throughput, in calls per second over all the threads; 0 for no floor.
+     */
+    double minOpsPerSecond() default 0;
+}
@@ -0,0 +1,66 @@
+package org.junit.RepeatedTests;
+
+import com.freemarker.FreemarkderDemo;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unlike {@link RepeatedTestsDemo}, the repetitions of a {@link PerfTest} are warmed up and measured: quick checks
+ * that rendering the {@link FreemarkderDemo} template didn't get much slower. The floors are far below what a laptop
+ * does (tens of thousands of renders per second), so they only catch big regressions.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 21:40
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class PerfTestDemo {
+
+    // Like the channel of a response, but nothing is kept. Channels.newChannel(...) is synchronized, so every
+    // thread gets its own
+    private static final ThreadLocal<WritableByteChannel> DISCARD = ThreadLocal.withInitial(() ->
+            Channels.newChannel(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            }));
+
+    private Template template;
+
+    private Map<String, Object> dataModel;
+
+    @BeforeAll
+    void createTemplate() throws Exception {
+        Configuration cfg = FreemarkderDemo.createConfiguration();
+        template = cfg.getTemplate("test.ftlh");
+        dataModel = FreemarkderDemo.createDataModel();
+
+        StringWriter out = new StringWriter();
+        template.process(dataModel, out);
+        assertTrue(out.toString().contains("Welcome Big Joe!"));
+    }
+
+    @PerfTest(warmup = 2000, iterations = 5000, minOpsPerSecond = 1000)
+    void renderToChannel() throws Exception {
+        FreemarkderDemo.renderTo(template, dataModel, DISCARD.get());
+    }
+
+    @PerfTest(warmup = 2000, iterations = 5000, threads = 4, minOpsPerSecond = 2000)
+    void renderToChannelConcurrently() throws Exception {
+        FreemarkderDemo.renderTo(template, dataModel, DISCARD.get());
+    }
+
+}
@@ -0,0 +1,162 @@
+package org.junit.RepeatedTests;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.extension.Extension;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+import org.junit.jupiter.api.extension.TestTemplateInvocationContext;
+import org.junit.jupiter.api.extension.TestTemplateInvocationContextProvider;
+import org.junit.TestInterfacesAndDefaultMethods.TimingExtension;
+import org.opentest4j.AssertionFailedError;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.platform.commons.support.AnnotationSupport.findAnnotation;
+import static org.junit.platform.commons.support.AnnotationSupport.isAnnotated;
+
+/**
+ * Runs the {@link PerfTest} methods: provides the warm-up and the measurement invocations, and intercepts them to
+ * call the method as many times as asked. Jupiter lets an interceptor proceed with an invocation only once, so the
+ * method is called by reflection (with the arguments Jupiter resolved for the invocation) and the invocation itself
+ * is skipped.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 21:40
+ */
+public class PerfTestExtension implements TestTemplateInvocationContextProvider {
+
+    public static final String FLOOR_FACTOR_PARAMETER = "perftest.floor.factor";
+
+    @Override
+    public boolean supportsTestTemplate(ExtensionContext context) {
+        return isAnnotated(context.getTestMethod(), PerfTest.class);
+    }
+
+    @Override
+    public Stream<TestTemplateInvocationContext> provideTestTemplateInvocationContexts(ExtensionContext context) {
+        PerfTest perfTest = findAnnotation(context.getTestMethod(), PerfTest.class).get();
+        if (perfTest.iterations() < 1 || perfTest.threads() < 1 || perfTest.warmup() < 0) {
+            throw new IllegalArgumentException("@PerfTest needs iterations >= 1, threads >= 1 and warmup >= 0: "
+                    + context.getRequiredTestMethod());
+        }
+        double floorFactor = context.getConfigurationParameter(FLOOR_FACTOR_PARAMETER)
+                .map(Double::parseDouble).orElse(1.0);
+        Stream<TestTemplateInvocationContext> measurement = Stream.of(new Phase(
+                String.format("measurement: %d iterations x %d threads", perfTest.iterations(), perfTest.threads()),
+                perfTest.iterations(), perfTest.threads(), perfTest.minOpsPerSecond() * floorFactor, true));
+        if (perfTest.warmup() == 0) {
+            return measurement;
+        }
+        return Stream.concat(Stream.of(new Phase(String.format("warm-up: %d iterations", perfTest.warmup()),
+                perfTest.warmup(), 1, 0, false)), measurement);
+    }
+
+    /**
+     * One invocation of the template: calls the method iterations times on each of threads threads.
+     */
+    private static final class Phase implements TestTemplateInvocationContext, InvocationInterceptor {
+
+        private final String displayName;
+        private final int iterations;
+        private final int threads;
+        private final double minOpsPerSecond;
+        private final boolean measured;
+
+        Phase(String displayName, int iterations, int threads, double minOpsPerSecond, boolean measured) {
+            this.displayName = displayName;
+            this.iterations = iterations;
+            this.threads = threads;
+            this.minOpsPerSecond = minOpsPerSecond;
+            this.measured = measured;
+        }
+
+        @Override
+        public String getDisplayName(int invocationIndex) {
+            return displayName;
+        }
+
+        @Override
+        public List<Extension> getAdditionalExtensions() {
+            return Collections.singletonList(this);
+        }
+
+        @Override
+        public void interceptTestTemplateMethod(Invocation<Void> invocation,
+                                                ReflectiveInvocationContext<Method> invocationContext,
+                                                ExtensionContext extensionContext) throws Throwable {
+            invocation.skip();
+            Method method = invocationContext.getExecutable();
+            method.setAccessible(true);
+            Object target = invocationContext.getTarget().orElse(null);
+            Object[] arguments = invocationContext.getArguments().toArray();
+
+            // From 1 ns, 3 significant digits; resizes itself for slower calls
+            Histogram latencies = new ConcurrentHistogram(3);
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            long elapsed;
+            try {
+                List<Future<?>> results = new ArrayList<>(threads);
+                for (int t = 0; t < threads; t++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < iterations; i++) {
+                            long callStart = System.nanoTime();
+                            method.invoke(target, arguments);
+                            if (measured) {
+                                latencies.recordValue(System.nanoTime() - callStart);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                long startTime = System.nanoTime();
+                start.countDown();
+                for (Future<?> result : results) {
+                    try {
+                        result.get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        throw cause instanceof InvocationTargetException ? cause.getCause() : cause;
+                    }
+                }
+                elapsed = System.nanoTime() - startTime;
+            } finally {
+                executor.shutdownNow();
+            }
+            if (!measured) {
+                return;
+            }
+
+            long calls = (long) iterations * threads;
+            double opsPerSecond = calls / (elapsed / 1e9);
+            Map<String, String> report = new LinkedHashMap<>();
+            report.put("perf.calls", String.valueOf(calls));
+            report.put("perf.threads", String.valueOf(threads));
+            report.put("perf.opsPerSecond", String.format("%.1f", opsPerSecond));
+            report.put("perf.p50", TimingExtension.format(latencies.getValueAtPercentile(50)));
+            report.put("perf.p99", TimingExtension.format(latencies.getValueAtPercentile(99)));
+            report.put("perf.max", TimingExtension.format(latencies.getMaxValue()));
+            extensionContext.publishReportEntry(report);
+
+            if (opsPerSecond < minOpsPerSecond) {
+                throw new AssertionFailedError(String.format("%.1f calls/s is below the floor of %.1f calls/s",
+                        opsPerSecond, minOpsPerSecond));
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.junit.TestExecutionOrder;
+
+import org.junit.TestInterfacesAndDefaultMethods.TestDurations;
+import org.junit.jupiter.api.ClassDescriptor;
+import org.junit.jupiter.api.ClassOrderer;
+import org.junit.jupiter.api.ClassOrdererContext;
+
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Orders the test classes by how long they took the last time they ran (see {@link TestDurations}, written by
+ * {@link org.junit.TestInterfacesAndDefaultMethods.TimingExtension}), the longest first, so a slow class doesn't start
+ * last and keep the run going alone on one worker while the others are idle. Enabled in junit-platform.properties:
+ * <pre>
+ * junit.jupiter.testclass.order.default = org.junit.TestExecutionOrder.LongestFirstClassOrderer
+ * </pre>
+ * The classes with a duration come first, longest first; then the ones without (new ones, as TimingExtension times
+ * every class), in the order they had. A class takes the sum of the durations of its methods.
+ *
+ * Jupiter forks the classes in this order; the workers that steal them take the first ones first. With
+ * timing.durations.file set, the durations come from there.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 22:40
+ */
+public class LongestFirstClassOrderer implements ClassOrderer {
+
+    @Override
+    public void orderClasses(ClassOrdererContext context) {
+        Map<String, Long> classDurations = durationsByClass(context.getConfigurationParameter(
+                TestDurations.FILE_PARAMETER).orElse(TestDurations.DEFAULT_FILE));
+        context.getClassDescriptors().sort(Comparator.comparing(
+                (ClassDescriptor descriptor) -> classDurations.get(descriptor.getTestClass().getName()),
+                Comparator.nullsLast(Comparator.reverseOrder())));
+    }
+
+    private static Map<String, Long> durationsByClass(String durationsFile) {
+        Map<String, Long> classDurations = new HashMap<>();
+        for (Map.Entry<String, Long> method : TestDurations.read(Paths.get(durationsFile)).entrySet()) {
+            String className = method.getKey().substring(0, method.getKey().indexOf('#'));
+            classDurations.merge(className, method.getValue(), Long::sum);
+        }
+        return classDurations;
+    }
+}
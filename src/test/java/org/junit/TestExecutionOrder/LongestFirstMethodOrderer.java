@@ -0,0 +1,50 @@
+package org.junit.TestExecutionOrder;
+
+import org.junit.TestInterfacesAndDefaultMethods.TestDurations;
+import org.junit.TestInterfacesAndDefaultMethods.TimingBaseline;
+import org.junit.TestInterfacesAndDefaultMethods.TimingExtension;
+import org.junit.jupiter.api.MethodDescriptor;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.MethodOrdererContext;
+import org.junit.jupiter.api.Order;
+
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Like MethodOrderer.OrderAnnotation, but the methods with the same order (the ones without @Order, usually) are
+ * ordered by how long they took the last time they ran (see {@link TestDurations}), the longest first, like
+ * {@link LongestFirstClassOrderer} does for the classes. The methods without a duration come last. Enabled in
+ * junit-platform.properties:
+ * <pre>
+ * junit.jupiter.testmethod.order.default = org.junit.TestExecutionOrder.LongestFirstMethodOrderer
+ * </pre>
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 22:40
+ */
+public class LongestFirstMethodOrderer implements MethodOrderer {
+
+    // Read once, the default orderer is shared by all the classes
+    private volatile Map<String, Long> durations;
+
+    @Override
+    public void orderMethods(MethodOrdererContext context) {
+        Map<String, Long> durations = this.durations;
+        if (durations == null) {
+            durations = TestDurations.read(Paths.get(context.getConfigurationParameter(
+                    TestDurations.FILE_PARAMETER).orElse(TestDurations.DEFAULT_FILE)));
+            this.durations = durations;
+        }
+        Map<String, Long> known = durations;
+        context.getMethodDescriptors().sort(Comparator.comparingInt(LongestFirstMethodOrderer::getOrder)
+                .thenComparing((MethodDescriptor descriptor) -> known.get(
+                        TimingBaseline.key(context.getTestClass(), TimingExtension.signature(descriptor.getMethod()))),
+                        Comparator.nullsLast(Comparator.reverseOrder())));
+    }
+
+    private static int getOrder(MethodDescriptor descriptor) {
+        return descriptor.findAnnotation(Order.class).map(Order::value).orElse(Order.DEFAULT);
+    }
+}
@@ -0,0 +1,152 @@
+package org.junit.TestInterfacesAndDefaultMethods;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * How long every test method took the last time it ran, written by {@link TimingExtension} at the end of every run,
+ * for the orderers of {@link org.junit.TestExecutionOrder} to start the longest tests first, and how much the tests
+ * of the last run waited, for {@link org.junit.ParallelExecution.AdaptiveParallelExecutionStrategy} to size the pool.
+ *
+ * Unlike the {@link TimingBaseline}, that is the reference of the regression checks, this is only the last run: a
+ * property per test method, "&lt;class&gt;#&lt;method signature&gt;", holding the total wall time of its calls in
+ * nanoseconds. The methods that didn't run keep their last duration. The {@link Totals} of the last run are in
+ * "@run.methods", "@run.wall" and "@run.cpu".
+ * The file is .timings/test-durations.properties by default, outside target/, so it survives mvn clean (on a CI,
+ * cache the .timings directory between the builds to keep the order); timing.durations.file moves it, and then
+ * junit.jupiter.execution.parallel.config.adaptive.durations.file must be moved along.
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 23:30
+ */
+public final class TestDurations {
+
+    private static final Logger logger = Logger.getLogger(TestDurations.class.getName());
+
+    public static final String FILE_PARAMETER = "timing.durations.file";
+
+    public static final String DEFAULT_FILE = ".timings/test-durations.properties";
+
+    // Can't be the start of a class name
+    private static final String RUN_PREFIX = "@run.";
+    private static final String RUN_METHODS = RUN_PREFIX + "methods";
+    private static final String RUN_WALL = RUN_PREFIX + "wall";
+    private static final String RUN_CPU = RUN_PREFIX + "cpu";
+
+    private TestDurations() {
+    }
+
+    /**
+     * The total wall time of every method of file, in nanoseconds, by {@link TimingBaseline#key}; empty if there is
+     * no such file, or it can't be read.
+     */
+    public static Map<String, Long> read(Path file) {
+        Map<String, Long> durations = readAll(file);
+        durations.keySet().removeIf(key -> key.startsWith(RUN_PREFIX));
+        return durations;
+    }
+
+    /**
+     * The totals of the last run of file, or null if there are none.
+     */
+    public static Totals readTotals(Path file) {
+        Map<String, Long> durations = readAll(file);
+        Long methods = durations.get(RUN_METHODS);
+        Long wallNanos = durations.get(RUN_WALL);
+        Long cpuNanos = durations.get(RUN_CPU);
+        return methods == null || wallNanos == null || cpuNanos == null ? null
+                : new Totals(methods, wallNanos, cpuNanos);
+    }
+
+    private static Map<String, Long> readAll(Path file) {
+        Map<String, Long> durations = new HashMap<>();
+        if (!Files.exists(file)) {
+            return durations;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+            for (String key : properties.stringPropertyNames()) {
+                durations.put(key, Long.parseLong(properties.getProperty(key)));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Rewritten at the end of the run
+            logger.log(Level.WARNING, "Ignored the unreadable test durations " + file, e);
+            durations.clear();
+        }
+        return durations;
+    }
+
+    /**
+     * Replaces the durations of the methods of current in file, keeping the others, and the totals of the run.
+     *
+     * @param run null if the CPU time couldn't be measured
+     */
+    public static void write(Path file, Map<String, Long> current, Totals run) throws IOException {
+        Map<String, Long> durations = new TreeMap<>(read(file));
+        durations.putAll(current);
+        if (run != null) {
+            durations.put(RUN_METHODS, run.getMethodCount());
+            durations.put(RUN_WALL, run.getWallNanos());
+            durations.put(RUN_CPU, run.getCpuNanos());
+        }
+        Properties properties = new Properties();
+        durations.forEach((key, nanos) -> properties.setProperty(key, String.valueOf(nanos)));
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(file)) {
+            properties.store(out, "The total wall time of the test methods in their last run, in nanoseconds, see "
+                    + TestDurations.class.getName());
+        }
+    }
+
+    /**
+     * The time spent in the test methods of a run.
+     */
+    public static final class Totals {
+
+        private final long methodCount;
+        private final long wallNanos;
+        private final long cpuNanos;
+
+        /**
+         * @param wallNanos the wall time of all the test methods, added together
+         * @param cpuNanos  the CPU time of the same test methods, added together
+         */
+        Totals(long methodCount, long wallNanos, long cpuNanos) {
+            this.methodCount = methodCount;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+        }
+
+        public long getMethodCount() {
+            return methodCount;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        /**
+         * How long the tests wait (for IO, locks, sleeps, or a CPU) per unit of CPU time they use. The work a test
+         * hands to other threads counts as waiting, so it errs high.
+         */
+        public double getWaitRatio() {
+            return cpuNanos == 0 ? 0 : Math.max(0, wallNanos - cpuNanos) / (double) cpuNanos;
+        }
+    }
+}
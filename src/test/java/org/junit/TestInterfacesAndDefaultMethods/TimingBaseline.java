@@ -0,0 +1,230 @@
+package org.junit.TestInterfacesAndDefaultMethods;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+
+/**
+ * The test durations of the last runs, that {@link TimingExtension} compares the current ones to.
+ *
+ * The baseline file (target/timing-baseline.properties by default) has a property per test method,
+ * "&lt;class&gt;#&lt;method signature&gt;", holding its duration histograms (HdrHistogram compressed, Base64) of the
+ * last timing.baseline.runs runs it ran in, the newest first.
+ * It's rewritten at the end of every run: the histogram of this run is added to each method, and the oldest dropped,
+ * so the reference follows the machine and the code instead of staying the first run forever; the methods that
+ * didn't run keep theirs, and so do the ones that regressed ({@link TimingExtension} leaves them out), or a
+ * regression would become its own reference after a few runs. timing.baseline.update=true replaces it with this run
+ * only, the way to accept a slowdown.
+ *
+ * A method regresses when its median, or its p99, is more than threshold times the one of the runs in the baseline
+ * (all of them together), and slower by more than min.delta (so the scheduling noise of sub-millisecond tests isn't
+ * reported). The median is only compared when both have at least min.samples samples, and the p99 when both have at
+ * least {@link #P99_MIN_SAMPLES}: on fewer, they are the maximum, or a single call.
+ *
+ * The configuration parameters (junit-platform.properties, or -D...):
+ * <pre>
+ * timing.baseline.file            the baseline file, target/timing-baseline.properties
+ * timing.baseline.runs            how many runs the baseline keeps, 5
+ * timing.baseline.update          true to replace the baseline with this run, false
+ * timing.regression.threshold     how many times slower is a regression, 1.5
+ * timing.regression.min.delta.us  how many microseconds slower at least, 100
+ * timing.regression.min.samples   how many samples the median needs to be compared, 10
+ * timing.regression.mode          warn (logged and reported) or fail (the test class fails), warn
+ * </pre>
+ *
+ * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
+ * @since 2026/10/18 21:10
+ */
+public class TimingBaseline {
+
+    private static final Logger logger = Logger.getLogger(TimingBaseline.class.getName());
+
+    public static final String FILE_PARAMETER = "timing.baseline.file";
+    public static final String RUNS_PARAMETER = "timing.baseline.runs";
+    public static final String UPDATE_PARAMETER = "timing.baseline.update";
+    public static final String THRESHOLD_PARAMETER = "timing.regression.threshold";
+    public static final String MIN_DELTA_PARAMETER = "timing.regression.min.delta.us";
+    public static final String MIN_SAMPLES_PARAMETER = "timing.regression.min.samples";
+    public static final String MODE_PARAMETER = "timing.regression.mode";
+
+    public static final String DEFAULT_FILE = "target/timing-baseline.properties";
+
+    public static final int P99_MIN_SAMPLES = 100;
+
+    // Between the histograms of the runs of a method
+    private static final String RUN_SEPARATOR = " ";
+
+    private final Path file;
+    private final int runs;
+    private final double threshold;
+    private final long minDeltaNanos;
+    private final long minSamples;
+    private final boolean failOnRegression;
+
+    // The histograms of the last runs, the newest first, by "<class>#<method>"; empty if there's no baseline yet
+    private final Map<String, List<Histogram>> histograms;
+
+    // The runs of histograms added together, by "<class>#<method>"
+    private final Map<String, Histogram> references = new HashMap<>();
+
+    private TimingBaseline(Path file, int runs, double threshold, long minDeltaNanos, long minSamples,
+                           boolean failOnRegression, Map<String, List<Histogram>> histograms) {
+        this.file = file;
+        this.runs = runs;
+        this.threshold = threshold;
+        this.minDeltaNanos = minDeltaNanos;
+        this.minSamples = minSamples;
+        this.failOnRegression = failOnRegression;
+        this.histograms = histograms;
+        for (Map.Entry<String, List<Histogram>> method : histograms.entrySet()) {
+            Histogram reference = new Histogram(3);
+            reference.setAutoResize(true);
+            method.getValue().forEach(reference::add);
+            references.put(method.getKey(), reference);
+        }
+    }
+
+    /**
+     * Reads the baseline file (if any) and the configuration parameters of the run of context.
+     */
+    public static TimingBaseline load(ExtensionContext context) {
+        Path file = Paths.get(context.getConfigurationParameter(FILE_PARAMETER)
+                .orElse(DEFAULT_FILE));
+        int runs = context.getConfigurationParameter(RUNS_PARAMETER).map(Integer::parseInt).orElse(5);
+        if (runs < 1) {
+            throw new IllegalArgumentException(RUNS_PARAMETER + " must be at least 1: " + runs);
+        }
+        boolean update = context.getConfigurationParameter(UPDATE_PARAMETER).map(Boolean::parseBoolean).orElse(false);
+        double threshold = context.getConfigurationParameter(THRESHOLD_PARAMETER).map(Double::parseDouble).orElse(1.5);
+        long minDeltaNanos = context.getConfigurationParameter(MIN_DELTA_PARAMETER).map(Long::parseLong).orElse(100L)
+                * 1000;
+        long minSamples = context.getConfigurationParameter(MIN_SAMPLES_PARAMETER).map(Long::parseLong).orElse(10L);
+        String mode = context.getConfigurationParameter(MODE_PARAMETER).orElse("warn");
+        if (!mode.equals("fail") && !mode.equals("warn")) {
+            throw new IllegalArgumentException(MODE_PARAMETER + " must be fail or warn: " + mode);
+        }
+
+        Map<String, List<Histogram>> histograms = new HashMap<>();
+        if (!update) {
+            read(file, histograms);
+        }
+        return new TimingBaseline(file, runs, threshold, minDeltaNanos, minSamples, mode.equals("fail"), histograms);
+    }
+
+    private static void read(Path file, Map<String, List<Histogram>> histograms) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+            for (String key : properties.stringPropertyNames()) {
+                List<Histogram> runs = new ArrayList<>();
+                for (String run : properties.getProperty(key).split(RUN_SEPARATOR)) {
+                    runs.add(decode(run));
+                }
+                histograms.put(key, runs);
+            }
+        } catch (IOException | DataFormatException | RuntimeException e) {
+            // A broken baseline is replaced at the end of the run
+            logger.log(Level.WARNING, "Ignored the unreadable timing baseline " + file, e);
+            histograms.clear();
+        }
+    }
+
+    /**
+     * @param signature see {@link TimingExtension#signature}
+     */
+    public static String key(Class<?> testClass, String signature) {
+        return testClass.getName() + "#" + signature;
+    }
+
+    public boolean isFailOnRegression() {
+        return failOnRegression;
+    }
+
+    /**
+     * @return how current regressed compared to the baseline, like "p50 2.10ms > 1.5 x 1.20ms"; empty if it didn't,
+     * or if the baseline doesn't have the method or there are too few samples to tell
+     */
+    public List<String> findRegressions(String key, Histogram current) {
+        List<String> regressions = new ArrayList<>(2);
+        Histogram baseline = references.get(key);
+        if (baseline == null) {
+            return regressions;
+        }
+        if (baseline.getTotalCount() >= minSamples && current.getTotalCount() >= minSamples) {
+            compare("p50", baseline.getValueAtPercentile(50), current.getValueAtPercentile(50), regressions);
+        }
+        if (baseline.getTotalCount() >= P99_MIN_SAMPLES && current.getTotalCount() >= P99_MIN_SAMPLES) {
+            compare("p99", baseline.getValueAtPercentile(99), current.getValueAtPercentile(99), regressions);
+        }
+        return regressions;
+    }
+
+    private void compare(String percentile, long baseline, long current, List<String> regressions) {
+        if (current > baseline * threshold && current - baseline > minDeltaNanos) {
+            regressions.add(String.format("%s %s > %s x %s", percentile, TimingExtension.format(current), threshold,
+                    TimingExtension.format(baseline)));
+        }
+    }
+
+    /**
+     * Writes the durations of this run into the baseline file, see the class comment.
+     *
+     * @param current the histograms of the methods to add, without the ones that regressed
+     */
+    public void store(Map<String, Histogram> current) throws IOException {
+        Map<String, List<Histogram>> stored = new TreeMap<>(histograms);
+        for (Map.Entry<String, Histogram> method : current.entrySet()) {
+            List<Histogram> runs = new ArrayList<>(this.runs);
+            runs.add(method.getValue());
+            List<Histogram> previous = stored.getOrDefault(method.getKey(), Collections.emptyList());
+            runs.addAll(previous.subList(0, Math.min(previous.size(), this.runs - 1)));
+            stored.put(method.getKey(), runs);
+        }
+        Properties properties = new Properties();
+        for (Map.Entry<String, List<Histogram>> method : stored.entrySet()) {
+            StringJoiner runs = new StringJoiner(RUN_SEPARATOR);
+            method.getValue().forEach(run -> runs.add(encode(run)));
+            properties.setProperty(method.getKey(), runs.toString());
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(file)) {
+            properties.store(out, "Test duration histograms (HdrHistogram, compressed, Base64), see "
+                    + TimingBaseline.class.getName());
+        }
+    }
+
+    private static String encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    private static Histogram decode(String encoded) throws DataFormatException {
+        return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(Base64.getDecoder().decode(encoded)), 0);
+    }
+}
@@ -1,38 +1,276 @@
 package org.junit.TestInterfacesAndDefaultMethods;
 
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.extension.AfterAllCallback;
 import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
 import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.opentest4j.AssertionFailedError;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Times the test methods with System.nanoTime(), and aggregates the durations of every method (across its
+ * repetitions, parameters and parallel runs) into a lock-free histogram, instead of logging every call.
+ *
+ * A method is told apart from its overloads by its {@link #signature(Method) signature}, like "render(int)".
+ * The p50/p99/max of each method are published:
+ * - as report entries ("timing.&lt;signature&gt;"), once the test class is done, so they end up in the test reports;
+ * - in one summary logged at the end of the run, for all the timed classes.
+ *
+ * Nothing is logged or allocated per call but the boxed start times, so it can time sub-millisecond tests.
+ *
+ * It's registered for every test class, in META-INF/services/org.junit.jupiter.api.extension.Extension (with
+ * junit.jupiter.extensions.autodetection.enabled), so the orderers know the duration of every class, not only of
+ * the ones that extend {@link TimeExecutionLogger}; its &#64;ExtendWith is then skipped, as the extension is already
+ * registered.
+ *
+ * The histograms are also kept in a baseline file under target/, and the methods tagged "timed" (like the ones of
+ * {@link TimeExecutionLogger}) are compared to it once their class is done: a method whose median or p99 regressed
+ * is warned about, or fails its test class. See {@link TimingBaseline} for the file and the thresholds. A method
+ * that regressed is left out of the baseline written at the end of the run, so re-running a slow build can't make the
+ * slow durations the reference.
+ * A {@link TestFactory} method isn't compared, even if tagged: its duration includes the time its dynamic tests
+ * waited for a thread, so it depends on what else runs in parallel more than on its own code.
+ *
+ * The total duration of every method is also written to {@link TestDurations} at the end of every run, for the
+ * orderers that start the longest tests first, with the CPU time the same methods used (when the JVM can measure
+ * it), for {@link org.junit.ParallelExecution.AdaptiveParallelExecutionStrategy} to tell how much the tests wait.
+ * It's the CPU time of the thread running the method, taken along with its wall time, so the engine, the JIT and the
+ * GC don't count as the tests' work; the threads a test starts (an executor it renders on, say) aren't counted
+ * either, so their work looks like waiting.
+ *
  * @author <a href="mailto:luojianwei@pinming.cn">LuoJianwei</a>
  * @since 2021/7/12 11:20
  */
-public class TimingExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+public class TimingExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback, AfterAllCallback {
 
     private static final Logger logger = Logger.getLogger(TimingExtension.class.getName());
 
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(TimingExtension.class);
+
     private static final String START_TIME = "start time";
 
+    private static final String START_CPU_TIME = "start CPU time";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static final String TIMED_TAG = "timed";
+
     @Override
     public void beforeTestExecution(ExtensionContext context) throws Exception {
-        getStore(context).put(START_TIME, System.currentTimeMillis());
+        // Created before the start time is taken, so it's not measured
+        getDurations(context);
+        ExtensionContext.Store store = getStore(context);
+        store.put(START_CPU_TIME, getCurrentThreadCpuTime());
+        store.put(START_TIME, System.nanoTime());
     }
 
     @Override
     public void afterTestExecution(ExtensionContext context) throws Exception {
-        Method testMethod = context.getRequiredTestMethod();
-        long startTime = getStore(context).remove(START_TIME, long.class);
-        long duration = System.currentTimeMillis() - startTime;
+        long duration = System.nanoTime() - getStore(context).remove(START_TIME, long.class);
+        long cpuTime = getCurrentThreadCpuTime();
+        long startCpuTime = getStore(context).remove(START_CPU_TIME, long.class);
+        Method method = context.getRequiredTestMethod();
+        boolean gated = context.getTags().contains(TIMED_TAG) && !AnnotationSupport.isAnnotated(method, TestFactory.class);
+        getDurations(context).record(context.getRequiredTestClass(), signature(method), gated, duration,
+                startCpuTime < 0 || cpuTime < 0 ? -1 : cpuTime - startCpuTime);
+    }
+
+    @Override
+    public void afterAll(ExtensionContext context) throws Exception {
+        Durations durations = getDurations(context);
+        Class<?> testClass = context.getRequiredTestClass();
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Histogram> method : durations.ofClass(testClass).entrySet()) {
+            context.publishReportEntry("timing." + method.getKey(), summarize(method.getValue()));
+            String key = TimingBaseline.key(testClass, method.getKey());
+            if (durations.isTimed(key)) {
+                List<String> found = durations.baseline.findRegressions(key, method.getValue());
+                if (!found.isEmpty()) {
+                    durations.regressed(key);
+                }
+                for (String regression : found) {
+                    context.publishReportEntry("timing.regression." + method.getKey(), regression);
+                    regressions.add(method.getKey() + ": " + regression);
+                }
+            }
+        }
+        if (regressions.isEmpty()) {
+            return;
+        }
+        String message = "Slower than the timing baseline: " + String.join(", ", regressions);
+        if (durations.baseline.isFailOnRegression()) {
+            throw new AssertionFailedError(message);
+        }
+        logger.warning(message);
+    }
 
-        logger.info(() -> String.format("Method [%s] took %s ms.", testMethod.getName(), duration));
+    /**
+     * The name of method with its parameter types, like Jupiter's unique ids do: "render(int, java.lang.String)".
+     */
+    public static String signature(Method method) {
+        StringJoiner signature = new StringJoiner(", ", method.getName() + "(", ")");
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            signature.add(parameterType.getTypeName());
+        }
+        return signature.toString();
     }
 
     private ExtensionContext.Store getStore(ExtensionContext context) {
         return context.getStore(ExtensionContext.Namespace.create(getClass(), context.getRequiredTestMethod()));
     }
 
-}
\ No newline at end of file
+    // One for the whole run, in the root store, so it's closed (and logs the summary) when the run ends
+    private static Durations getDurations(ExtensionContext context) {
+        return context.getRoot().getStore(NAMESPACE)
+                .getOrComputeIfAbsent(Durations.class, type -> new Durations(TimingBaseline.load(context),
+                        Paths.get(context.getConfigurationParameter(TestDurations.FILE_PARAMETER)
+                                .orElse(TestDurations.DEFAULT_FILE))), Durations.class);
+    }
+
+    private static String summarize(Histogram histogram) {
+        return String.format("n=%d p50=%s p99=%s max=%s", histogram.getTotalCount(),
+                format(histogram.getValueAtPercentile(50)), format(histogram.getValueAtPercentile(99)),
+                format(histogram.getMaxValue()));
+    }
+
+    // The CPU time used by the current thread so far, or -1 if the JVM can't tell
+    private static long getCurrentThreadCpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * A duration for people: "850ns", "12.3us", "4.56ms".
+     */
+    public static String format(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000) {
+            return String.format("%.1fus", nanos / 1e3);
+        }
+        return String.format("%.2fms", nanos / 1e6);
+    }
+
+    /**
+     * The duration histograms, by test class and method signature, the baseline they are compared to, and the
+     * {@link TestDurations} file they are written to.
+     */
+    static final class Durations implements ExtensionContext.Store.CloseableResource {
+
+        private final ConcurrentMap<Class<?>, ConcurrentMap<String, Histogram>> histograms = new ConcurrentHashMap<>();
+
+        // The TimingBaseline.key of the methods tagged "timed", but the test factories
+        private final Set<String> timed = ConcurrentHashMap.newKeySet();
+
+        // The TimingBaseline.key of the timed methods slower than the baseline
+        private final Set<String> regressed = ConcurrentHashMap.newKeySet();
+
+        final TimingBaseline baseline;
+
+        private final Path durationsFile;
+
+        // The CPU time of the calls recorded, or -1 once one couldn't be measured
+        private final LongAdder cpuNanos = new LongAdder();
+        private volatile boolean cpuMeasured = true;
+
+        Durations(TimingBaseline baseline, Path durationsFile) {
+            this.baseline = baseline;
+            this.durationsFile = durationsFile;
+        }
+
+        /**
+         * @param cpuNanos the CPU time of the call, -1 if it couldn't be measured
+         */
+        void record(Class<?> testClass, String signature, boolean tagged, long nanos, long cpuNanos) {
+            if (cpuNanos < 0) {
+                cpuMeasured = false;
+            } else {
+                this.cpuNanos.add(cpuNanos);
+            }
+            histograms.computeIfAbsent(testClass, c -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(signature, m -> {
+                        if (tagged) {
+                            timed.add(TimingBaseline.key(testClass, signature));
+                        }
+                        // 3 significant digits, from 1 ns; resizes itself for longer tests
+                        ConcurrentHistogram histogram = new ConcurrentHistogram(3);
+                        histogram.setAutoResize(true);
+                        return histogram;
+                    })
+                    .recordValue(Math.max(nanos, 0));
+        }
+
+        boolean isTimed(String key) {
+            return timed.contains(key);
+        }
+
+        void regressed(String key) {
+            regressed.add(key);
+        }
+
+        Map<String, Histogram> ofClass(Class<?> testClass) {
+            Map<String, Histogram> methods = histograms.get(testClass);
+            return methods != null ? methods : new ConcurrentHashMap<>();
+        }
+
+        @Override
+        public void close() {
+            if (histograms.isEmpty()) {
+                return;
+            }
+            StringBuilder summary = new StringBuilder("Test durations:");
+            histograms.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey((a, b) -> a.getName().compareTo(b.getName())))
+                    .forEach(testClass -> testClass.getValue().entrySet().stream()
+                            .sorted(Map.Entry.comparingByKey())
+                            .forEach(method -> summary.append(System.lineSeparator())
+                                    .append(testClass.getKey().getSimpleName()).append('.').append(method.getKey())
+                                    .append(": ").append(summarize(method.getValue()))));
+            logger.info(summary.toString());
+
+            Map<String, Histogram> all = new HashMap<>();
+            histograms.forEach((testClass, methods) -> methods.forEach((signature, histogram) ->
+                    all.put(TimingBaseline.key(testClass, signature), histogram)));
+            Map<String, Histogram> kept = new HashMap<>(all);
+            kept.keySet().removeAll(regressed);
+            if (!regressed.isEmpty()) {
+                logger.warning("Left out of the timing baseline, as they regressed: " + regressed);
+            }
+            try {
+                baseline.store(kept);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Couldn't write the timing baseline", e);
+            }
+            Map<String, Long> totals = new HashMap<>();
+            all.forEach((key, histogram) -> totals.put(key, (long) (histogram.getMean() * histogram.getTotalCount())));
+            TestDurations.Totals run = !cpuMeasured ? null : new TestDurations.Totals(totals.size(),
+                    totals.values().stream().mapToLong(Long::longValue).sum(), cpuNanos.sum());
+            try {
+                TestDurations.write(durationsFile, totals, run);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Couldn't write the test durations", e);
+            }
+        }
+    }
+}